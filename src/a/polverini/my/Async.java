@@ -0,0 +1,232 @@
+package a.polverini.my;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * the asynchronous facade of a database: each call returns at once with a future,
+ * and at most a given number of calls run at the same time, the others wait in a queue without holding a thread.
+ * The loads of the items tree, which mutate the tree and its primary key maps, run one at a time in a queue of their own
+ * @param <D> the database type
+ */
+public class Async<D extends DB & Loader> {
+
+	/**
+	 * a blocking call on the database
+	 * @param <D> the database type
+	 * @param <T> the result type
+	 */
+	public interface Call<D, T> {
+		/**
+		 * @param db the database
+		 * @return the result
+		 * @throws Exception
+		 */
+		public T call(D db) throws Exception;
+	}
+
+	/**
+	 * a pending call and its future
+	 */
+	private static class Task {
+		final CompletableFuture<?> future;
+		final Runnable body;
+		Task(CompletableFuture<?> future, Runnable body) {
+			this.future = future;
+			this.body = body;
+		}
+	}
+
+	/**
+	 * the threads shared by the facades without an executor of their own, created on demand and dropped when idle
+	 */
+	private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "Async");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * a queue of calls and the number of them running
+	 */
+	private static class Lane {
+		final int concurrency;
+		final Queue<Task> pending = new ConcurrentLinkedQueue<>();
+		final AtomicInteger running = new AtomicInteger();
+		Lane(int concurrency) {
+			this.concurrency = concurrency;
+		}
+	}
+
+	private final D db;
+	private final Executor executor;
+	private final Lane calls;
+	private final Lane loads = new Lane(1);
+
+	/**
+	 * the calls run on the shared threads, as many at the same time as the connections in the database pool
+	 * @param db the database
+	 */
+	public Async(D db) {
+		this(db, EXECUTOR, db.getPool().getMetrics().size);
+	}
+
+	/**
+	 * @param db the database
+	 * @param executor the executor running the calls
+	 * @param concurrency the maximum number of calls running at the same time
+	 */
+	public Async(D db, Executor executor, int concurrency) {
+		this.db = db;
+		this.executor = executor;
+		this.calls = new Lane(Math.max(1, concurrency));
+	}
+
+	/**
+	 * @return the database
+	 */
+	public D getDB() {
+		return db;
+	}
+
+	/**
+	 * @return the number of calls waiting to run, loads included
+	 */
+	public int getPending() {
+		return calls.pending.size()+loads.pending.size();
+	}
+
+	/**
+	 * @param call the call, not mutating the items tree
+	 * @return the future result of the call
+	 * @see #load(Call)
+	 */
+	public <T> CompletableFuture<T> call(Call<? super D, T> call) {
+		return submit(calls, call);
+	}
+
+	/**
+	 * run a call mutating the items tree, such as {@link Loader#query()} or {@link DBS#refresh()}, 
+	 * after the loads submitted before it and never at the same time as another load
+	 * @param call the call
+	 * @return the future result of the call
+	 */
+	public <T> CompletableFuture<T> load(Call<? super D, T> call) {
+		return submit(loads, call);
+	}
+
+	/**
+	 * @param lane the queue of the call
+	 * @param call the call
+	 * @return the future result of the call
+	 */
+	private <T> CompletableFuture<T> submit(Lane lane, Call<? super D, T> call) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		lane.pending.add(new Task(future, () -> {
+			try {
+				future.complete(call.call(db));
+			} catch (Throwable e) {
+				future.completeExceptionally(e);
+			}
+		}));
+		schedule(lane);
+		return future;
+	}
+
+	/**
+	 * start the pending calls of a queue while below its concurrency limit
+	 * @param lane the queue
+	 */
+	private void schedule(Lane lane) {
+		while(true) {
+			int n = lane.running.get();
+			if(n>=lane.concurrency || lane.pending.isEmpty()) {
+				return;
+			}
+			if(!lane.running.compareAndSet(n, n+1)) {
+				continue;
+			}
+			Task task = lane.pending.poll();
+			if(task==null || task.future.isDone()) {
+				// cancelled while pending
+				lane.running.decrementAndGet();
+				continue;
+			}
+			try {
+				executor.execute(() -> {
+					try {
+						task.body.run();
+					} finally {
+						lane.running.decrementAndGet();
+						schedule(lane);
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				lane.running.decrementAndGet();
+				task.future.completeExceptionally(e);
+			}
+		}
+	}
+
+	/**
+	 * @see DB#query(String, Map)
+	 */
+	public CompletableFuture<List<Properties>> query(String table, Map<Object, String> keys) {
+		return call(db -> db.query(table, keys));
+	}
+
+	/**
+	 * @see DB#query(String, Map, Filter)
+	 */
+	public CompletableFuture<List<Properties>> query(String table, Map<Object, String> keys, Filter filter) {
+		return call(db -> db.query(table, keys, filter));
+	}
+
+	/**
+	 * @see DB#page(String, Map, Filter, Object, Object, int)
+	 */
+	public CompletableFuture<DB.Page> page(String table, Map<Object, String> keys, Filter filter, Object pk, Object after, int size) {
+		return call(db -> db.page(table, keys, filter, pk, after, size));
+	}
+
+	/**
+	 * @see DB#count(String)
+	 */
+	public CompletableFuture<Integer> count(String table) {
+		return call(db -> db.count(table));
+	}
+
+	/**
+	 * @see DB#insert(String, Map, List)
+	 */
+	public CompletableFuture<Void> insert(String table, Map<Object, String> keys, List<Properties> data) {
+		return call(db -> {
+			db.insert(table, keys, data);
+			return null;
+		});
+	}
+
+	/**
+	 * @see DB#updateBatches(String, Map, List, String)
+	 */
+	public CompletableFuture<List<int[]>> update(String table, Map<String, String> keys, List<Properties> data, String pk) {
+		return call(db -> db.updateBatches(table, keys, data, pk));
+	}
+
+	/**
+	 * @see Loader#query()
+	 * @see #load(Call)
+	 */
+	public CompletableFuture<List<Item>> query() {
+		return load(db -> db.query());
+	}
+}
@@ -1,23 +1,45 @@
 package a.polverini.my;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
-import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
-import java.util.TimeZone;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.h2.jdbc.JdbcClob;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
 
 import a.polverini.my.exceptions.InvalidKeyException;
 import a.polverini.my.exceptions.UnexpectedTypeException;
@@ -35,31 +57,118 @@ public abstract class DB {
 		TIMESTAMP
 	}
 
+	/**
+	 * the SQL dialect of the database
+	 */
+	public enum Dialect {
+		H2,
+		POSTGRESQL,
+		OTHER
+	}
+
+	/**
+	 * the receiver of the rows streamed by a query
+	 */
+	public interface RowHandler {
+		/**
+		 * @param properties the properties of the row
+		 * @throws SQLException
+		 */
+		public void handle(Properties properties) throws SQLException;
+	}
+
 	/** 
 	 * database URL
 	 */
 	private final String url;
 	
-	/** 
-	 * database username
-	 */
-	private final String user;
-	
-	/** 
-	 * database password
+	/**
+	 * the connection pool
 	 */
-	private final String pswd;
+	private final Pool pool;
 	
 	/**
-	 * the connection
+	 * the connection of the transaction running on each thread, see {@link #snapshot(Work)}
 	 */
-	private Connection connection;
-	
+	private final ThreadLocal<Connection> transaction = new ThreadLocal<>();
+
 	/**
+	 * borrow a connection from the pool, to be given back with {@link #release(Connection)};
+	 * within {@link #snapshot(Work)} the connection of the transaction
 	 * @return the connection
+	 * @throws SQLException
+	 */
+	public Connection getConnection() throws SQLException {
+		Connection connection = transaction.get();
+		return connection!=null ? connection : pool.borrow();
+	}
+
+	/**
+	 * give back a connection obtained with {@link #getConnection()}
+	 * @param connection the connection
+	 */
+	public void release(Connection connection) {
+		if(connection!=null && connection==transaction.get()) {
+			return;
+		}
+		pool.release(connection);
+	}
+
+	/**
+	 * a unit of work reading the database
+	 * @param <T> the result type
+	 */
+	public interface Work<T> {
+		/**
+		 * @return the result
+		 * @throws SQLException
+		 */
+		public T run() throws SQLException;
+	}
+
+	/**
+	 * run the work in a single read transaction, repeatable read where supported, 
+	 * so that all its reads on the calling thread see the same state of the database; 
+	 * the reads of other threads use connections of their own. Nested calls join the running transaction
+	 * @param work the work, reading only
+	 * @return the result of the work
+	 * @throws SQLException
+	 */
+	protected <T> T snapshot(Work<T> work) throws SQLException {
+		if(transaction.get()!=null) {
+			return work.run();
+		}
+		Connection connection = pool.borrow();
+		int isolation = connection.getTransactionIsolation();
+		try {
+			if(connection.getMetaData().supportsTransactionIsolationLevel(Connection.TRANSACTION_REPEATABLE_READ)) {
+				connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+			}
+			connection.setAutoCommit(false);
+			transaction.set(connection);
+			T result = work.run();
+			connection.commit();
+			return result;
+		} finally {
+			transaction.remove();
+			try {
+				if(!connection.getAutoCommit()) {
+					connection.rollback();
+					connection.setAutoCommit(true);
+				}
+				connection.setTransactionIsolation(isolation);
+			} catch (SQLException e) {
+				connection.close();
+			}
+			pool.release(connection);
+		}
+	}
+
+	/**
+	 * @return the connection pool
 	 */
-	public Connection getConnection() {
-		return connection;
+	public Pool getPool() {
+		return pool;
 	}
 
 	/**
@@ -69,6 +178,34 @@ public abstract class DB {
 		return this.url;
 	}
 
+	/**
+	 * @return the SQL dialect, derived from the URL
+	 */
+	public Dialect getDialect() {
+		if(url.startsWith("jdbc:postgresql:")) return Dialect.POSTGRESQL;
+		if(url.startsWith("jdbc:h2:")) return Dialect.H2;
+		return Dialect.OTHER;
+	}
+
+	/**
+	 * the number of rows fetched per round trip by the cursor queries
+	 */
+	private int fetchSize = 1000;
+
+	/**
+	 * @return the number of rows fetched per round trip
+	 */
+	public int getFetchSize() {
+		return fetchSize;
+	}
+
+	/**
+	 * @param fetchSize the number of rows fetched per round trip
+	 */
+	public void setFetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+
 	/**
 	 * constructor
 	 * @param url the database URL
@@ -77,23 +214,25 @@ public abstract class DB {
 	 * @throws SQLException 
 	 */
 	public DB(String url, String user, String pswd) throws SQLException {
-		this.url = url;
-		this.user = user;
-		this.pswd = pswd;
-		connection = DriverManager.getConnection(url, this.user, this.pswd);
+		this(new Pool.Bounded(url, user, pswd));
+	}
+
+	/**
+	 * constructor
+	 * @param pool the connection pool
+	 * @throws SQLException 
+	 */
+	public DB(Pool pool) throws SQLException {
+		this.url = pool.getURL();
+		this.pool = pool;
+		pool.release(pool.borrow());
 	}
 
 	/**
 	 * @throws SQLException
 	 */
 	public void dispose() {
-		try {
-			if(isConnected()) {
-				connection.close();
-				connection = null;
-			}
-		} catch (SQLException e) {
-		}
+		pool.close();
 	}
 
 	/**
@@ -101,7 +240,71 @@ public abstract class DB {
 	 * @throws SQLException
 	 */
 	public boolean isConnected() throws SQLException {
-		return (connection!=null && !connection.isClosed());
+		return pool.isOpen();
+	}
+
+	/**
+	 * the column types of a table, as cached by {@link #getTypes(String)}
+	 */
+	private static class Schema {
+		final Map<String, Type> types;
+		final long loaded;
+		Schema(Map<String, Type> types) {
+			this.types = Collections.unmodifiableMap(types);
+			this.loaded = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * the cached column types, by table name
+	 */
+	private final Map<String, Schema> schemas = new ConcurrentHashMap<>();
+
+	/**
+	 * the milliseconds after which a cached schema is reloaded, 0 to keep it until invalidated
+	 */
+	private long schemaTTL = 0;
+
+	/**
+	 * @return the milliseconds after which a cached schema is reloaded, 0 if never
+	 */
+	public long getSchemaTTL() {
+		return schemaTTL;
+	}
+
+	/**
+	 * @param schemaTTL the milliseconds after which a cached schema is reloaded, 0 if never
+	 */
+	public void setSchemaTTL(long schemaTTL) {
+		this.schemaTTL = schemaTTL;
+	}
+
+	/**
+	 * drop the cached schema of the specified table
+	 * @param table the table name
+	 */
+	public void invalidate(String table) {
+		schemas.remove(table);
+	}
+
+	/**
+	 * drop all the cached schemas
+	 */
+	public void invalidate() {
+		schemas.clear();
+		warmed = false;
+	}
+
+	/**
+	 * true once the schemas of {@link #getTables()} have been loaded
+	 */
+	private volatile boolean warmed;
+
+	/**
+	 * @return the names of the tables whose schemas are loaded together on the first call to {@link #getTypes(String)}, none by default
+	 */
+	public List<String> getTables() {
+		return Collections.emptyList();
 	}
 
 	/**
@@ -111,53 +314,255 @@ public abstract class DB {
 	 * @throws UnexpectedTypeException
 	 */
 	public Map<String, Type> getTypes(String table) throws SQLException, UnexpectedTypeException {
+		if(!warmed) {
+			warmed = true;
+			warm(getTables());
+		}
+		Schema schema = schemas.get(table);
+		if(schema!=null && (schemaTTL<=0 || System.currentTimeMillis()-schema.loaded < schemaTTL)) {
+			return schema.types;
+		}
 		Map<String, Type> types = new HashMap<String, Type>();
 		if(isConnected()) {
+			Connection connection = null;
+			ResultSet resultSet = null;
+			try {
+				connection = getConnection();
+				DatabaseMetaData metadata = connection.getMetaData();
+				if(metadata!=null) {
+					resultSet = metadata.getColumns(connection.getCatalog(), connection.getSchema(), table, null);
+					while (resultSet.next()) {
+						String name = resultSet.getString("COLUMN_NAME");
+						String type = resultSet.getString("TYPE_NAME");
+						types.put(name, type(name, type));
+					}
+				}
+			} finally {
+				if(resultSet!=null) resultSet.close();
+				release(connection);
+			}
+			if(!types.isEmpty()) {
+				schema = new Schema(types);
+				schemas.put(table, schema);
+				return schema.types;
+			}
+		}
+		return types;
+	}
+
+	/**
+	 * load the schemas of the specified tables with a single metadata query on the current schema;
+	 * the tables with unexpected column types are left to {@link #getTypes(String)}
+	 * @param tables the table names
+	 * @throws SQLException
+	 */
+	protected void warm(Collection<String> tables) throws SQLException {
+		if(!isConnected()) return;
+		Set<String> wanted = new HashSet<>(tables);
+		Map<String, Map<String, Type>> loaded = new HashMap<>();
+		Set<String> rejected = new HashSet<>();
+		Connection connection = null;
+		ResultSet resultSet = null;
+		try {
+			connection = getConnection();
 			DatabaseMetaData metadata = connection.getMetaData();
 			if(metadata!=null) {
-				ResultSet resultSet = metadata.getColumns(null, null, table, null);
+				resultSet = metadata.getColumns(connection.getCatalog(), connection.getSchema(), null, null);
 				while (resultSet.next()) {
+					String table = resultSet.getString("TABLE_NAME");
+					if(!wanted.contains(table) || rejected.contains(table)) continue;
 					String name = resultSet.getString("COLUMN_NAME");
 					String type = resultSet.getString("TYPE_NAME");
-					switch(type) {
-					case "varchar":
-					case "text":
-						types.put(name, Type.STRING);
-						break;
-					case "int4":
-					case "int8":
-						types.put(name, Type.INTEGER);
-						break;
-					case "bool":
-						types.put(name, Type.BOOLEAN);
-						break;
-					case "float8":
-						types.put(name, Type.FLOAT);
-						break;
-					case "timestamp":
-						types.put(name, Type.TIMESTAMP);
-						break;
-					default:
-						throw new UnexpectedTypeException(name, type);
+					try {
+						Map<String, Type> types = loaded.get(table);
+						if(types==null) {
+							types = new HashMap<>();
+							loaded.put(table, types);
+						}
+						types.put(name, type(name, type));
+					} catch (UnexpectedTypeException e) {
+						loaded.remove(table);
+						rejected.add(table);
 					}
 				}
 			}
+		} finally {
+			if(resultSet!=null) resultSet.close();
+			release(connection);
 		}
-		return types;
+		for(Map.Entry<String, Map<String, Type>> entry : loaded.entrySet()) {
+			schemas.put(entry.getKey(), new Schema(entry.getValue()));
+		}
+	}
+
+	/**
+	 * @param name the field name
+	 * @param type the SQL type name
+	 * @return the relevant type
+	 * @throws UnexpectedTypeException
+	 */
+	private static Type type(String name, String type) throws UnexpectedTypeException {
+		switch(type) {
+		case "varchar":
+		case "text":
+		case "VARCHAR":
+		case "CLOB":
+			return Type.STRING;
+		case "int4":
+		case "int8":
+		case "INTEGER":
+		case "BIGINT":
+			return Type.INTEGER;
+		case "bool":
+		case "BOOLEAN":
+			return Type.BOOLEAN;
+		case "float8":
+		case "DOUBLE":
+			return Type.FLOAT;
+		case "timestamp":
+		case "TIMESTAMP":
+			return Type.TIMESTAMP;
+		default:
+			throw new UnexpectedTypeException(name, type);
+		}
+	}
+
+	/**
+	 * how {@link #count(String)} counts the entries of a table
+	 */
+	public enum Count {
+		/** SELECT count(*) */
+		EXACT,
+		/** SELECT count(*), kept until the table is written through this instance */
+		CACHED,
+		/** the planner statistics, exact if the database keeps none */
+		ESTIMATED
+	}
+
+	/**
+	 * the default count mode
+	 */
+	private Count countMode = Count.EXACT;
+
+	/**
+	 * @return the default count mode
+	 */
+	public Count getCountMode() {
+		return countMode;
+	}
+
+	/**
+	 * @param countMode the default count mode
+	 */
+	public void setCountMode(Count countMode) {
+		this.countMode = countMode;
+	}
+
+	/**
+	 * the cached exact counts, by table name
+	 */
+	private final Map<String, Integer> rowCounts = new ConcurrentHashMap<>();
+
+	/**
+	 * incremented by every invalidation, so that a count computed across one is not kept
+	 */
+	private final AtomicLong countVersion = new AtomicLong();
+
+	/**
+	 * drop the cached counts, e.g. after the database has been written by someone else
+	 */
+	public void invalidateCounts() {
+		countVersion.incrementAndGet();
+		rowCounts.clear();
 	}
 
 	/**
+	 * drop the cached count of a table written through this instance
 	 * @param table the table name
-	 * @return the number of entries in the specified table
+	 */
+	private void invalidateCount(String table) {
+		countVersion.incrementAndGet();
+		rowCounts.remove(table);
+	}
+
+	/**
+	 * @param table the table name
+	 * @return the number of entries in the specified table, counted as set by {@link #setCountMode(Count)}
 	 * @throws SQLException
 	 */
 	public int count(String table) throws SQLException {
+		return count(table, countMode);
+	}
+
+	/**
+	 * @param table the table name
+	 * @param mode the count mode
+	 * @return the number of entries in the specified table
+	 * @throws SQLException
+	 */
+	public int count(String table, Count mode) throws SQLException {
+		switch(mode) {
+		case CACHED:
+			Integer cached = rowCounts.get(table);
+			if(cached==null) {
+				long version = countVersion.get();
+				cached = count(table, Count.EXACT);
+				rowCounts.put(table, cached);
+				// an invalidation after the count started: either it removed the entry, or it is seen here
+				if(countVersion.get()!=version) {
+					rowCounts.remove(table, cached);
+				}
+			}
+			return cached;
+		case ESTIMATED:
+			String sql;
+			switch(getDialect()) {
+			case POSTGRESQL:
+				sql = "SELECT reltuples::bigint FROM pg_class WHERE oid = to_regclass(?)";
+				break;
+			case H2:
+				sql = "SELECT row_count_estimate FROM information_schema.tables WHERE upper(table_name) = upper(?) AND table_schema = schema()";
+				break;
+			default:
+				return count(table, Count.EXACT);
+			}
+			long estimate = -1;
+			if(isConnected()) {
+				Connection connection = null;
+				PreparedStatement statement = null;
+				ResultSet rs = null;
+				try {
+					connection = getConnection();
+					statement = connection.prepareStatement(sql);
+					statement.setString(1, table);
+					rs = statement.executeQuery();
+					if(rs.next()) {
+						estimate = rs.getLong(1);
+					}
+				} catch (SQLException e) {
+					throw e;
+				} finally {
+					if(rs!=null) rs.close();
+					if(statement!=null) statement.close();
+					release(connection);
+				}
+			}
+			// a table never analyzed has no statistics (reltuples is -1, or 0 before PostgreSQL 14)
+			if(estimate<=0) {
+				return count(table, Count.EXACT);
+			}
+			return (int)Math.min(estimate, Integer.MAX_VALUE);
+		default:
+			break;
+		}
 		int count = 0;
 		if(isConnected()) {
 			String sql = String.format("SELECT count(*) FROM %s", table);
+			Connection connection = null;
 			Statement statement = null;
 			ResultSet rs = null;
 			try {
+				connection = getConnection();
 				statement = connection.createStatement();
 				rs = statement.executeQuery(sql);
 				rs.next();
@@ -167,23 +572,30 @@ public abstract class DB {
 			} finally {
 				if(rs!=null) rs.close();
 				if(statement!=null) statement.close();
+				release(connection);
 			}
 		}
 		return count;
 	}
 
 	/**
+	 * the next key as max(pk)+1, racing with every other writer and with the key sequence:
+	 * the keys handed out by {@link #nextKey(String)} start at the same value, so the two cannot be mixed on a table
 	 * @param table the table name
 	 * @return the next key value
 	 * @throws SQLException
+	 * @deprecated use {@link #createSequence(String)} once and {@link #nextKey(String)}
 	 */
+	@Deprecated
 	public int pk(String table) throws SQLException {
 		int pk = 0;
 		if(isConnected()) {
 			String sql = String.format("SELECT max(pk) FROM %s", table);
+			Connection connection = null;
 			Statement statement = null;
 			ResultSet rs = null;
 			try {
+				connection = getConnection();
 				statement = connection.createStatement();
 				rs = statement.executeQuery(sql);
 				rs.next();
@@ -193,27 +605,208 @@ public abstract class DB {
 			} finally {
 				if(rs!=null) rs.close();
 				if(statement!=null) statement.close();
+				release(connection);
 			}
 		}
 		return pk+1;
 	}
 
 	/**
-	 * delete the content of the specified table and the linked entries in the other tables
+	 * the keys reserved per round trip by {@link #nextKey(String)}
+	 */
+	private int keyBlock = 100;
+
+	/**
+	 * @return the keys reserved per round trip
+	 */
+	public int getKeyBlock() {
+		return keyBlock;
+	}
+
+	/**
+	 * @param keyBlock the keys reserved per round trip
+	 */
+	public void setKeyBlock(int keyBlock) {
+		this.keyBlock = keyBlock;
+	}
+
+	/**
+	 * the keys reserved for a table and not handed out yet
+	 */
+	private static class Keys {
+		long[] keys = new long[0];
+		int next;
+	}
+
+	/**
+	 * the reserved keys, by table name
+	 */
+	private final Map<String, Keys> keys = new ConcurrentHashMap<>();
+
+	/**
+	 * the key sequence of each table, empty if it has none
+	 */
+	private final Map<String, String> sequences = new ConcurrentHashMap<>();
+
+	/**
+	 * hand out a key of the specified table, reserving a new block of {@link #getKeyBlock()} keys when the previous one is used up;
+	 * the keys come from the table's sequence, so that concurrent writers never share a key
+	 * @param table the table name
+	 * @return the key
+	 * @throws SQLException if the table has no sequence, see {@link #createSequence(String)}
+	 */
+	public long nextKey(String table) throws SQLException {
+		Keys block = keys.computeIfAbsent(table, t -> new Keys());
+		synchronized (block) {
+			if(block.next==block.keys.length) {
+				block.keys = reserve(table, Math.max(1, keyBlock));
+				block.next = 0;
+			}
+			return block.keys[block.next++];
+		}
+	}
+
+	/**
+	 * drop the keys reserved and not handed out yet, e.g. after the table has been truncated
+	 * @param table the table name
+	 */
+	public void discardKeys(String table) {
+		keys.remove(table);
+	}
+
+	/**
+	 * @param table the table name
+	 * @return the name of the table's key sequence, by default &lt;table&gt;_pk_seq, null if the database has none
+	 * @throws SQLException
+	 */
+	protected String getSequence(String table) throws SQLException {
+		if(getDialect()==Dialect.OTHER) {
+			return null;
+		}
+		String sequence = sequences.get(table);
+		if(sequence==null) {
+			sequence = "";
+			String sql = "SELECT sequence_name FROM information_schema.sequences WHERE lower(sequence_name)=lower(?)";
+			Connection connection = null;
+			PreparedStatement statement = null;
+			ResultSet rs = null;
+			try {
+				connection = getConnection();
+				statement = connection.prepareStatement(sql);
+				statement.setString(1, table+"_pk_seq");
+				rs = statement.executeQuery();
+				if(rs.next()) {
+					sequence = rs.getString(1);
+				}
+			} catch (SQLException e) {
+				throw e;
+			} finally {
+				if(rs!=null) rs.close();
+				if(statement!=null) statement.close();
+				release(connection);
+			}
+			sequences.put(table, sequence);
+		}
+		return sequence.isEmpty() ? null : sequence;
+	}
+
+	/**
+	 * create the key sequence of the specified table if missing, starting above the current max(pk): 
+	 * a setup step to run before the first {@link #nextKey(String)}, after which the keys inserted 
+	 * without {@link #nextKey(String)} must stay below the sequence
+	 * @param table the table name
+	 * @return the name of the sequence
+	 * @throws SQLException if the database has no sequences
+	 */
+	public String createSequence(String table) throws SQLException {
+		if(getDialect()==Dialect.OTHER) {
+			throw new SQLException("no key sequence for "+table);
+		}
+		String sequence = table+"_pk_seq";
+		long max = 0;
+		Connection connection = null;
+		Statement statement = null;
+		ResultSet rs = null;
+		try {
+			connection = getConnection();
+			statement = connection.createStatement();
+			rs = statement.executeQuery(String.format("SELECT max(pk) FROM %s", table));
+			rs.next();
+			max = rs.getLong(1);
+			rs.close();
+			rs = null;
+			// if another writer created it meanwhile, theirs is kept
+			statement.execute(String.format("CREATE SEQUENCE IF NOT EXISTS %s START WITH %d", sequence, max+1));
+		} catch (SQLException e) {
+			throw e;
+		} finally {
+			if(rs!=null) rs.close();
+			if(statement!=null) statement.close();
+			release(connection);
+		}
+		sequences.put(table, sequence);
+		return sequence;
+	}
+
+	/**
+	 * reserve keys of the specified table with a single round trip
+	 * @param table the table name
+	 * @param size the number of keys
+	 * @return the keys
+	 * @throws SQLException
+	 */
+	private long[] reserve(String table, int size) throws SQLException {
+		if(!isConnected()) {
+			throw new SQLException("not connected");
+		}
+		String sequence = getSequence(table);
+		if(sequence==null) {
+			throw new SQLException("no key sequence for "+table+", see createSequence");
+		}
+		String sql = getDialect()==Dialect.POSTGRESQL
+				? String.format("SELECT nextval('%s') FROM generate_series(1, %d)", sequence, size)
+				: String.format("SELECT NEXT VALUE FOR %s FROM SYSTEM_RANGE(1, %d)", sequence, size);
+		long[] reserved = new long[size];
+		Connection connection = null;
+		Statement statement = null;
+		ResultSet rs = null;
+		try {
+			connection = getConnection();
+			statement = connection.createStatement();
+			rs = statement.executeQuery(sql);
+			for(int i=0; i<size && rs.next(); i++) {
+				reserved[i] = rs.getLong(1);
+			}
+		} catch (SQLException e) {
+			throw e;
+		} finally {
+			if(rs!=null) rs.close();
+			if(statement!=null) statement.close();
+			release(connection);
+		}
+		return reserved;
+	}
+
+	/**
+	 * delete the content of the specified table, and on PostgreSQL the linked entries in the other tables
 	 * @param table the table name
 	 * @throws SQLException
 	 */
 	public void truncate(String table) throws SQLException {
 		if(isConnected()) {
-			String sql = String.format("TRUNCATE TABLE %s CASCADE;", table);
+			String sql = String.format(getDialect()==Dialect.POSTGRESQL ? "TRUNCATE TABLE %s CASCADE;" : "TRUNCATE TABLE %s;", table);
+			Connection connection = null;
 			Statement statement = null;
 			try {
+				connection = getConnection();
 				statement = connection.createStatement();
 				statement.execute(sql);
 			} catch (SQLException e) {
 				throw e;
 			} finally {
 				if(statement!=null) statement.close();
+				release(connection);
+				invalidateCounts();
 			}
 		}
 	}
@@ -226,64 +819,815 @@ public abstract class DB {
 	public void delete(String table) throws SQLException {
 		if(isConnected()) {
 			String sql = String.format("DELETE FROM %s;", table);
+			Connection connection = null;
 			Statement statement = null;
 			try {
+				connection = getConnection();
 				statement = connection.createStatement();
 				statement.execute(sql);
 			} catch (SQLException e) {
 				throw e;
 			} finally {
 				if(statement!=null) statement.close();
+				release(connection);
+				invalidateCount(table);
 			}
 		}
 	}
 	
 	/**
-	 * query the content of the specified table
-	 * @param table the table name
-	 * @param keys the mapping key vs field
-	 * @return the list of properties
+	 * read the foreign keys of the specified tables from the database metadata
+	 * @param tables the table names
+	 * @return the tables, among the specified ones, referenced by each table
 	 * @throws SQLException
 	 */
-	public List<Properties> query(String table, Map<Object, String> keys) throws SQLException {
-		List<Properties> list = new ArrayList<>();
+	public Map<String, Set<String>> getReferences(Collection<String> tables) throws SQLException {
+		Map<String, String> names = new HashMap<>();
+		Map<String, Set<String>> references = new LinkedHashMap<>();
+		for(String table : tables) {
+			names.put(table.toLowerCase(), table);
+			references.put(table, new LinkedHashSet<>());
+		}
 		if(isConnected()) {
-			Object[] k = keys.keySet().toArray();
-			String[] f = new String[k.length];
-			for(int i=0; i<k.length; i++){
-				f[i] = keys.get(k[i]);
+			Connection connection = null;
+			try {
+				connection = getConnection();
+				DatabaseMetaData metadata = connection.getMetaData();
+				for(String table : tables) {
+					ResultSet resultSet = null;
+					try {
+						resultSet = metadata.getImportedKeys(null, null, metadata.storesLowerCaseIdentifiers() ? table.toLowerCase() : metadata.storesUpperCaseIdentifiers() ? table.toUpperCase() : table);
+						while(resultSet.next()) {
+							String referenced = names.get(resultSet.getString("PKTABLE_NAME").toLowerCase());
+							if(referenced!=null && !referenced.equals(table)) {
+								references.get(table).add(referenced);
+							}
+						}
+					} finally {
+						if(resultSet!=null) resultSet.close();
+					}
+				}
+			} finally {
+				release(connection);
+			}
+		}
+		return references;
+	}
+
+	/**
+	 * @param references the tables referenced by each table
+	 * @return the tables, each one before those it references; the tables in a cycle are left at the end in their order
+	 */
+	protected static List<String> referencingFirst(Map<String, Set<String>> references) {
+		Map<String, Integer> referencing = new LinkedHashMap<>();
+		for(String table : references.keySet()) {
+			referencing.put(table, 0);
+		}
+		for(Set<String> referenced : references.values()) {
+			for(String table : referenced) {
+				referencing.put(table, referencing.get(table)+1);
+			}
+		}
+		List<String> order = new ArrayList<>();
+		Set<String> done = new HashSet<>();
+		boolean progress = true;
+		while(progress) {
+			progress = false;
+			for(Map.Entry<String, Integer> entry : referencing.entrySet()) {
+				String table = entry.getKey();
+				if(entry.getValue()==0 && done.add(table)) {
+					order.add(table);
+					for(String referenced : references.get(table)) {
+						referencing.put(referenced, referencing.get(referenced)-1);
+					}
+					progress = true;
+				}
+			}
+		}
+		for(String table : references.keySet()) {
+			if(!done.contains(table)) {
+				order.add(table);
+			}
+		}
+		return order;
+	}
+
+	/**
+	 * delete the content of the specified tables at once: a single TRUNCATE ... CASCADE on PostgreSQL, 
+	 * {@link #delete(Collection)} otherwise, as on H2 a TRUNCATE commits and cannot join the transaction of the other tables
+	 * @param tables the table names
+	 * @throws SQLException
+	 */
+	public void truncate(Collection<String> tables) throws SQLException {
+		if(tables.isEmpty() || !isConnected()) {
+			return;
+		}
+		if(getDialect()!=Dialect.POSTGRESQL) {
+			delete(tables);
+			return;
+		}
+		Connection connection = null;
+		Statement statement = null;
+		try {
+			connection = getConnection();
+			statement = connection.createStatement();
+			statement.execute(String.format("TRUNCATE TABLE %s CASCADE", String.join(", ", tables)));
+		} catch (SQLException e) {
+			throw e;
+		} finally {
+			if(statement!=null) statement.close();
+			release(connection);
+			invalidateCounts();
+		}
+		for(String table : tables) {
+			discardKeys(table);
+		}
+	}
+
+	/**
+	 * delete the content of the specified tables in a single transaction, 
+	 * the referencing tables first as read by {@link #getReferences(Collection)}
+	 * @param tables the table names
+	 * @throws SQLException
+	 */
+	public void delete(Collection<String> tables) throws SQLException {
+		if(tables.isEmpty() || !isConnected()) {
+			return;
+		}
+		List<String> order = referencingFirst(getReferences(tables));
+		Connection connection = null;
+		Statement statement = null;
+		try {
+			connection = getConnection();
+			boolean autoCommit = connection.getAutoCommit();
+			try {
+				connection.setAutoCommit(false);
+				statement = connection.createStatement();
+				for(String table : order) {
+					statement.addBatch(String.format("DELETE FROM %s", table));
+				}
+				statement.executeBatch();
+				connection.commit();
+			} catch (SQLException e) {
+				connection.rollback();
+				throw e;
+			} finally {
+				connection.setAutoCommit(autoCommit);
+			}
+		} catch (SQLException e) {
+			throw e;
+		} finally {
+			if(statement!=null) statement.close();
+			release(connection);
+			for(String table : tables) {
+				invalidateCount(table);
+			}
+		}
+		for(String table : tables) {
+			discardKeys(table);
+		}
+	}
+
+	/**
+	 * query the content of the specified table
+	 * @param table the table name
+	 * @param keys the mapping key vs field
+	 * @return the list of properties
+	 * @throws SQLException
+	 */
+	public List<Properties> query(String table, Map<Object, String> keys) throws SQLException {
+		final List<Properties> list = new ArrayList<>();
+		query(table, keys, new RowHandler() {
+			@Override
+			public void handle(Properties properties) {
+				list.add(properties);
+			}
+		});
+		return list;
+	}
+
+	/**
+	 * stream the content of the specified table through a cursor, one row at a time
+	 * @param table the table name
+	 * @param keys the mapping key vs field
+	 * @param handler the receiver of the rows
+	 * @throws SQLException
+	 */
+	public void query(String table, Map<Object, String> keys, RowHandler handler) throws SQLException {
+		Object[] k = keys.keySet().toArray();
+		fetch(select(table, keys, k), k, handler);
+	}
+
+	/**
+	 * query the entries of the specified table matching the filter, in the filter order
+	 * @param table the table name
+	 * @param keys the mapping key vs field, the fields to be selected
+	 * @param filter the conditions and the ordering
+	 * @return the list of properties
+	 * @throws SQLException
+	 * @throws InvalidKeyException if the filter refers to a key not in the mapping
+	 */
+	public List<Properties> query(String table, Map<Object, String> keys, Filter filter) throws SQLException, InvalidKeyException {
+		final List<Properties> list = new ArrayList<>();
+		query(table, keys, filter, list::add);
+		return list;
+	}
+
+	/**
+	 * stream the entries of the specified table matching the filter through a cursor, in the filter order
+	 * @param table the table name
+	 * @param keys the mapping key vs field, the fields to be selected
+	 * @param filter the conditions and the ordering
+	 * @param handler the receiver of the rows
+	 * @throws SQLException
+	 * @throws InvalidKeyException if the filter refers to a key not in the mapping
+	 */
+	public void query(String table, Map<Object, String> keys, Filter filter, RowHandler handler) throws SQLException, InvalidKeyException {
+		Object[] k = keys.keySet().toArray();
+		List<Object> params = new ArrayList<>();
+		String sql = select(table, keys, k)+filter.toSQL(keys, params);
+		fetch(sql, params.toArray(), k, handler);
+	}
+
+	/**
+	 * @param table the table name
+	 * @param keys the mapping key vs field, the fields to be compared
+	 * @return a checksum of the entries, independent of their order and of the backend, see {@link #hash(Properties)}
+	 * @throws SQLException
+	 */
+	public long checksum(String table, Map<Object, String> keys) throws SQLException {
+		final long[] checksum = new long[1];
+		query(table, keys, properties -> checksum[0] += hash(properties));
+		return checksum[0];
+	}
+
+	/**
+	 * @param table the table name
+	 * @param keys the mapping key vs field, the fields to be compared
+	 * @param filter the entries to be compared
+	 * @return a checksum of the filtered entries, see {@link #checksum(String, Map)}
+	 * @throws SQLException
+	 * @throws InvalidKeyException if the filter refers to a key not in the mapping
+	 */
+	public long checksum(String table, Map<Object, String> keys, Filter filter) throws SQLException, InvalidKeyException {
+		final long[] checksum = new long[1];
+		query(table, keys, filter, properties -> checksum[0] += hash(properties));
+		return checksum[0];
+	}
+
+	/**
+	 * @param properties the properties of an entry
+	 * @return a 64-bit FNV-1a hash of the entry, independent of the order of the keys; 
+	 * the values are compared by their string form, with the integral numbers, the booleans and the timestamps normalized
+	 */
+	public static long hash(Properties properties) {
+		List<String> entries = new ArrayList<>();
+		for(Map.Entry<Object, Object> entry : properties.entrySet()) {
+			Object val = entry.getValue();
+			if(val instanceof Integer || val instanceof Long || val instanceof Short || val instanceof Byte) {
+				val = ((Number)val).longValue();
+			} else if(val instanceof Timestamp) {
+				val = ((Timestamp)val).getTime();
+			} else if(val instanceof Boolean || "true".equalsIgnoreCase(String.valueOf(val)) || "false".equalsIgnoreCase(String.valueOf(val))) {
+				val = String.valueOf(val).toLowerCase();
+			}
+			entries.add(entry.getKey()+"="+val);
+		}
+		Collections.sort(entries);
+		long hash = 0xcbf29ce484222325L;
+		for(String entry : entries) {
+			for(int i=0; i<entry.length(); i++) {
+				hash ^= entry.charAt(i);
+				hash *= 0x100000001b3L;
 			}
-			String sql = String.format("SELECT %s FROM %s", String.join(", ", f), table);
+			hash ^= '\n';
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	/**
+	 * the digest of the entries in a key range
+	 */
+	public static class Digest {
+
+		/** the lowest key included */
+		public final long from;
+		/** the highest key excluded */
+		public final long to;
+		/** the number of entries */
+		public final int count;
+		/** the sum of the hashes of the entries, see {@link DB#hash(Properties)} */
+		public final long hash;
+
+		public Digest(long from, long to, int count, long hash) {
+			this.from = from;
+			this.to = to;
+			this.count = count;
+			this.hash = hash;
+		}
+	}
+
+	/**
+	 * @param table the table name
+	 * @param keys the mapping key vs field, including the key
+	 * @param pk the numeric key
+	 * @return the lowest and the highest key, null if the table is empty
+	 * @throws SQLException
+	 * @throws InvalidKeyException if the key is not in the mapping
+	 */
+	public long[] getRange(String table, Map<Object, String> keys, Object pk) throws SQLException, InvalidKeyException {
+		String field = keys.get(pk);
+		if(field==null) {
+			throw new InvalidKeyException(String.valueOf(pk));
+		}
+		long[] range = null;
+		if(isConnected()) {
+			String sql = String.format("SELECT min(%s), max(%s) FROM %s", field, field, table);
+			Connection connection = null;
+			Statement statement = null;
+			ResultSet rs = null;
+			try {
+				connection = getConnection();
+				statement = connection.createStatement();
+				rs = statement.executeQuery(sql);
+				if(rs.next() && rs.getObject(1)!=null) {
+					range = new long[] {rs.getLong(1), rs.getLong(2)};
+				}
+			} catch (SQLException e) {
+				throw e;
+			} finally {
+				if(rs!=null) rs.close();
+				if(statement!=null) statement.close();
+				release(connection);
+			}
+		}
+		return range;
+	}
+
+	/**
+	 * @param table the table name
+	 * @param keys the mapping key vs field, including the key
+	 * @param key the key
+	 * @return the highest value of the key, null if the table is empty
+	 * @throws SQLException
+	 * @throws InvalidKeyException if the key is not in the mapping
+	 */
+	public Object max(String table, Map<Object, String> keys, Object key) throws SQLException, InvalidKeyException {
+		String field = keys.get(key);
+		if(field==null) {
+			throw new InvalidKeyException(String.valueOf(key));
+		}
+		Object max = null;
+		if(isConnected()) {
+			String sql = String.format("SELECT max(%s) FROM %s", field, table);
+			Connection connection = null;
 			Statement statement = null;
 			ResultSet rs = null;
-			try {   
+			try {
+				connection = getConnection();
 				statement = connection.createStatement();
 				rs = statement.executeQuery(sql);
+				if(rs.next()) {
+					max = rs.getObject(1);
+				}
+			} catch (SQLException e) {
+				throw e;
+			} finally {
+				if(rs!=null) rs.close();
+				if(statement!=null) statement.close();
+				release(connection);
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * digest the entries of a key range, split in buckets of equal width, with a single pass of a filtered cursor
+	 * @param table the table name
+	 * @param keys the mapping key vs field, the fields to be compared, including the key
+	 * @param pk the numeric key
+	 * @param from the lowest key included
+	 * @param to the highest key excluded
+	 * @param buckets the number of buckets
+	 * @return the digest of each bucket, in key order
+	 * @throws SQLException
+	 * @throws InvalidKeyException if the key is not in the mapping
+	 */
+	public Digest[] digest(String table, Map<Object, String> keys, Object pk, long from, long to, int buckets) throws SQLException, InvalidKeyException {
+		final long width = Math.max(1, (to-from+buckets-1)/buckets);
+		final int n = (int)Math.max(1, Math.min(buckets, (to-from+width-1)/width));
+		final int[] counts = new int[n];
+		final long[] hashes = new long[n];
+		query(table, keys, new Filter().range(pk, from, to), properties -> {
+			int i = (int)((((Number)properties.get(pk)).longValue()-from)/width);
+			counts[i]++;
+			hashes[i] += hash(properties);
+		});
+		Digest[] digests = new Digest[n];
+		for(int i=0; i<n; i++) {
+			digests[i] = new Digest(from+i*width, Math.min(to, from+(i+1)*width), counts[i], hashes[i]);
+		}
+		return digests;
+	}
+
+	/**
+	 * a page of entries, and the key to continue after
+	 */
+	public static class Page {
+
+		private final List<Properties> rows;
+		private final Object next;
+
+		Page(List<Properties> rows, Object next) {
+			this.rows = rows;
+			this.next = next;
+		}
+
+		/**
+		 * @return the entries in the page
+		 */
+		public List<Properties> getRows() {
+			return rows;
+		}
+
+		/**
+		 * @return the key to pass for the next page, null if this is the last one
+		 */
+		public Object getNext() {
+			return next;
+		}
+
+		/**
+		 * @return true if there is a next page
+		 */
+		public boolean hasNext() {
+			return next!=null;
+		}
+	}
+
+	/**
+	 * query a page of the entries of the specified table, in key order, with keyset pagination:
+	 * each page costs the same however far it is
+	 * @param table the table name
+	 * @param keys the mapping key vs field, including the key
+	 * @param pk the key, unique and ordered, e.g. the primary key
+	 * @param after the key of the last entry of the previous page, as returned by {@link Page#getNext()}, null for the first page
+	 * @param size the maximum number of entries in the page
+	 * @return the page
+	 * @throws SQLException
+	 * @throws InvalidKeyException if the key is not in the mapping
+	 */
+	public Page page(String table, Map<Object, String> keys, Object pk, Object after, int size) throws SQLException, InvalidKeyException {
+		return page(table, keys, new Filter(), pk, after, size);
+	}
+
+	/**
+	 * query a page of the entries of the specified table matching the filter, in key order, with keyset pagination
+	 * @param table the table name
+	 * @param keys the mapping key vs field, including the key
+	 * @param filter the conditions, its ordering is ignored
+	 * @param pk the key, unique and ordered, e.g. the primary key
+	 * @param after the key of the last entry of the previous page, as returned by {@link Page#getNext()}, null for the first page
+	 * @param size the maximum number of entries in the page
+	 * @return the page
+	 * @throws SQLException
+	 * @throws InvalidKeyException if the filter or the key is not in the mapping
+	 */
+	public Page page(String table, Map<Object, String> keys, Filter filter, Object pk, Object after, int size) throws SQLException, InvalidKeyException {
+		if(size<1) {
+			throw new IllegalArgumentException("page size "+size);
+		}
+		Object[] k = keys.keySet().toArray();
+		List<Object> params = new ArrayList<>();
+		String sql = select(table, keys, k)+new Filter(filter).after(pk, after).orderBy(pk, true).toSQL(keys, params)+" LIMIT ?";
+		// one more entry than the page, to know if there is a next one
+		params.add(size+1);
+		final List<Properties> rows = new ArrayList<>();
+		fetch(sql, params.toArray(), k, rows::add);
+		if(rows.size()<=size) {
+			return new Page(rows, null);
+		}
+		rows.remove(size);
+		return new Page(rows, rows.get(size-1).get(pk));
+	}
+
+	/**
+	 * stream the rows of a SELECT statement through a cursor, one row at a time
+	 * @param sql the SELECT statement
+	 * @param k the keys in column order
+	 * @param handler the receiver of the rows
+	 * @throws SQLException
+	 */
+	protected void fetch(String sql, Object[] k, RowHandler handler) throws SQLException {
+		fetch(sql, new Object[0], k, handler);
+	}
+
+	/**
+	 * stream the rows of a parameterised SELECT statement through a cursor, one row at a time
+	 * @param sql the SELECT statement
+	 * @param params the statement parameters
+	 * @param k the keys in column order
+	 * @param handler the receiver of the rows
+	 * @throws SQLException
+	 */
+	protected void fetch(String sql, Object[] params, Object[] k, RowHandler handler) throws SQLException {
+		if(isConnected()) {
+			Connection connection = null;
+			PreparedStatement statement = null;
+			ResultSet rs = null;
+			try {
+				connection = getConnection();
+				statement = prepareCursor(connection, sql);
+				for(int i=0; i<params.length; i++) {
+					statement.setObject(i+1, params[i]);
+				}
+				rs = statement.executeQuery();
 				while (rs.next()) {
-					Properties properties = new Properties();
-					for(int i=0; i<k.length; i++) {
-						Object val = rs.getObject(i+1);
-						if(val!=null) {
-							if (val instanceof JdbcClob) {
-								JdbcClob clob = (JdbcClob)val;
-								properties.put(k[i], clob.getSubString(1, (int) clob.length()));
-							} else {
-								properties.put(k[i], val);
-							}
-						}
-					}
-					list.add(properties);
+					handler.handle(read(rs, k));
 				}
 			} catch (SQLException e) {
 				throw e;
 			} finally {
 				if(rs!=null) rs.close();
 				if(statement!=null) statement.close();
+				release(connection);
 			}
 		} else {
 			System.err.println("not-connected!");
 		}
-		return list;
+	}
+
+	/**
+	 * stream the content of the specified table through a cursor;
+	 * the stream holds a pooled connection and must be closed
+	 * @param table the table name
+	 * @param keys the mapping key vs field
+	 * @return the stream of properties
+	 * @throws SQLException
+	 */
+	public Stream<Properties> stream(String table, Map<Object, String> keys) throws SQLException {
+		if(!isConnected()) {
+			System.err.println("not-connected!");
+			return Stream.empty();
+		}
+		final Object[] k = keys.keySet().toArray();
+		String sql = select(table, keys, k);
+		final Connection connection = getConnection();
+		Statement statement = null;
+		try {
+			statement = openCursor(connection);
+			final Statement cursor = statement;
+			final ResultSet rs = statement.executeQuery(sql);
+			Spliterator<Properties> spliterator = new Spliterators.AbstractSpliterator<Properties>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+				@Override
+				public boolean tryAdvance(Consumer<? super Properties> action) {
+					try {
+						if(!rs.next()) return false;
+						action.accept(read(rs, k));
+						return true;
+					} catch (SQLException e) {
+						throw new IllegalStateException(e);
+					}
+				}
+			};
+			return StreamSupport.stream(spliterator, false).onClose(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						rs.close();
+						cursor.close();
+					} catch (SQLException e) {
+					} finally {
+						release(connection);
+					}
+				}
+			});
+		} catch (SQLException e) {
+			if(statement!=null) statement.close();
+			release(connection);
+			throw e;
+		}
+	}
+
+	/**
+	 * @param table the table name
+	 * @param keys the mapping key vs field
+	 * @param k the keys in column order
+	 * @return the SELECT statement
+	 */
+	private static String select(String table, Map<Object, String> keys, Object[] k) {
+		String[] f = new String[k.length];
+		for(int i=0; i<k.length; i++){
+			f[i] = keys.get(k[i]);
+		}
+		return String.format("SELECT %s FROM %s", String.join(", ", f), table);
+	}
+
+	/**
+	 * create a forward-only statement fetching the rows in blocks of {@link #getFetchSize()};
+	 * on PostgreSQL the auto-commit is turned off, so that the cursor is kept on the server
+	 * @param connection the connection
+	 * @return the statement
+	 * @throws SQLException
+	 */
+	private Statement openCursor(Connection connection) throws SQLException {
+		if(getDialect()==Dialect.POSTGRESQL) {
+			connection.setAutoCommit(false);
+		}
+		Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		statement.setFetchSize(fetchSize);
+		return statement;
+	}
+
+	/**
+	 * prepare a forward-only statement fetching the rows in blocks of {@link #getFetchSize()}, as {@link #openCursor(Connection)}
+	 * @param connection the connection
+	 * @param sql the SELECT statement
+	 * @return the statement
+	 * @throws SQLException
+	 */
+	private PreparedStatement prepareCursor(Connection connection, String sql) throws SQLException {
+		if(getDialect()==Dialect.POSTGRESQL) {
+			connection.setAutoCommit(false);
+		}
+		PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		statement.setFetchSize(fetchSize);
+		return statement;
+	}
+
+	/**
+	 * @param rs the result set
+	 * @param k the keys in column order
+	 * @return the properties of the current row
+	 * @throws SQLException
+	 */
+	private static Properties read(ResultSet rs, Object[] k) throws SQLException {
+		Properties properties = new Properties();
+		for(int i=0; i<k.length; i++) {
+			Object val = rs.getObject(i+1);
+			if(val!=null) {
+				if (val instanceof JdbcClob) {
+					JdbcClob clob = (JdbcClob)val;
+					properties.put(k[i], clob.getSubString(1, (int) clob.length()));
+				} else {
+					properties.put(k[i], val);
+				}
+			}
+		}
+		return properties;
+	}
+
+	/**
+	 * binds a value to a parameter of a prepared statement
+	 */
+	public interface Binder {
+		/**
+		 * @param statement the prepared statement
+		 * @param index the parameter index
+		 * @param val the value
+		 * @throws SQLException
+		 */
+		public void bind(PreparedStatement statement, int index, Object val) throws SQLException;
+	}
+
+	/**
+	 * the format of the timestamps given as strings, in the local time zone as for {@link Timestamp#valueOf(String)}
+	 */
+	private static final DateTimeFormatter TIMESTAMP_FORMAT = new DateTimeFormatterBuilder()
+			.appendPattern("uuuu-M-d")
+			.optionalStart().appendLiteral(' ').optionalEnd()
+			.optionalStart().appendLiteral('T').optionalEnd()
+			.appendPattern("H:mm:ss")
+			.optionalStart().appendFraction(ChronoField.NANO_OF_SECOND, 0, 9, true).optionalEnd()
+			.toFormatter(Locale.UK);
+
+	private static final Binder STRING_BINDER = (statement, index, val) -> {
+		if(val instanceof String) {
+			statement.setString(index, (String)val);
+		} else {
+			statement.setObject(index, val);
+		}
+	};
+
+	private static final Binder INTEGER_BINDER = (statement, index, val) -> {
+		if(val instanceof Long) {
+			statement.setLong(index, (Long)val);
+		} else if(val instanceof String) {
+			statement.setLong(index, Long.parseLong((String)val));
+		} else {
+			statement.setObject(index, val);
+		}
+	};
+
+	private static final Binder FLOAT_BINDER = (statement, index, val) -> {
+		if(val instanceof Float) {
+			statement.setFloat(index, (Float)val);
+		} else if(val instanceof String) {
+			statement.setFloat(index, Float.parseFloat((String)val));
+		} else {
+			statement.setObject(index, val);
+		}
+	};
+
+	private static final Binder BOOLEAN_BINDER = (statement, index, val) -> {
+		if(val instanceof Boolean) {
+			statement.setBoolean(index, (Boolean)val);
+		} else if(val instanceof String) {
+			statement.setBoolean(index, Boolean.parseBoolean((String)val));
+		} else {
+			statement.setObject(index, val);
+		}
+	};
+
+	private static final Binder TIMESTAMP_BINDER = (statement, index, val) -> {
+		if(val instanceof Timestamp) {
+			statement.setTimestamp(index, (Timestamp)val);
+		} else if(val instanceof String) {
+			statement.setTimestamp(index, Timestamp.valueOf(LocalDateTime.parse((String)val, TIMESTAMP_FORMAT)));
+		} else {
+			statement.setObject(index, val);
+		}
+	};
+
+	/**
+	 * compile the column plan of a statement
+	 * @param f the field names
+	 * @param t the field types
+	 * @return the binder of each field
+	 * @throws UnexpectedTypeException
+	 */
+	private static Binder[] binders(String[] f, Type[] t) throws UnexpectedTypeException {
+		Binder[] b = new Binder[t.length];
+		for(int i=0; i<t.length; i++) {
+			if(t[i]==null) {
+				throw new UnexpectedTypeException(f[i], "null");
+			}
+			switch(t[i]) {
+			case STRING:
+				b[i] = STRING_BINDER;
+				break;
+			case INTEGER:
+				b[i] = INTEGER_BINDER;
+				break;
+			case FLOAT:
+				b[i] = FLOAT_BINDER;
+				break;
+			case BOOLEAN:
+				b[i] = BOOLEAN_BINDER;
+				break;
+			case TIMESTAMP:
+				b[i] = TIMESTAMP_BINDER;
+				break;
+			default:
+				throw new UnexpectedTypeException(f[i], t[i].toString());
+			}
+		}
+		return b;
+	}
+
+	/**
+	 * the number of rows sent per batch by insert and update
+	 */
+	private int batchSize = 1000;
+
+	/**
+	 * the number of batches committed per transaction by insert and update
+	 */
+	private int batchesPerCommit = 1;
+
+	/**
+	 * @return the number of rows sent per batch
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * @param batchSize the number of rows sent per batch, at least 1
+	 */
+	public void setBatchSize(int batchSize) {
+		if(batchSize<1) {
+			throw new IllegalArgumentException("batch size "+batchSize);
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * @return the number of batches committed per transaction
+	 */
+	public int getBatchesPerCommit() {
+		return batchesPerCommit;
+	}
+
+	/**
+	 * @param batchesPerCommit the number of batches committed per transaction, at least 1
+	 */
+	public void setBatchesPerCommit(int batchesPerCommit) {
+		if(batchesPerCommit<1) {
+			throw new IllegalArgumentException("batches per commit "+batchesPerCommit);
+		}
+		this.batchesPerCommit = batchesPerCommit;
 	}
 
 	/**
@@ -306,74 +1650,17 @@ public abstract class DB {
 				v[i] = "?";
 				t[i] = types.get(f[i]);
 			}
+			Binder[] b = binders(f, t);
 			String sql = String.format("INSERT INTO %s (%s) VALUES (%s)", table, String.join(", ", f), String.join(", ", v));
-			PreparedStatement statement = null;
+			Connection connection = null;
 			try {
-				statement = connection.prepareStatement(sql);
-				int n=0;
-				for(Properties properties : data) {
-					for(int i=0; i<k.length; i++) {
-						Object val = properties.get(k[i]);
-						switch(t[i]) {
-						case STRING:
-							if(val instanceof String) {
-								statement.setString(i+1, (String)val);
-							} else {
-								statement.setObject(i+1, val);
-							}
-							break;
-						case INTEGER:
-							if(val instanceof Long) {
-								statement.setLong(i+1, (Long)val);
-							} else if(val instanceof String) {
-								statement.setLong(i+1, Long.parseLong((String)val));
-							} else {
-								statement.setObject(i+1, val);
-							}
-							break;
-						case FLOAT:
-							if(val instanceof Float) {
-								statement.setFloat(i+1, (Float)val);
-							} else if(val instanceof String) {
-								statement.setFloat(i+1, Float.parseFloat((String)val));
-							} else {
-								statement.setObject(i+1, val);
-							}
-							break;
-						case BOOLEAN:
-							if(val instanceof Boolean) {
-								statement.setBoolean(i+1, (Boolean)val);
-							} else if(val instanceof String) {
-								statement.setBoolean(i+1, Boolean.parseBoolean((String)val));
-							} else {
-								statement.setObject(i+1, val);
-							}
-							break;
-						case TIMESTAMP:
-							if(val instanceof Timestamp) {
-								statement.setTimestamp(i+1, (Timestamp)val);
-							} else if(val instanceof String) {
-								SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd H:mm:ss", Locale.UK);
-								sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
-								statement.setTimestamp(i+1, Timestamp.valueOf((String)val));
-							} else {
-								statement.setObject(i+1, val);
-							}
-							break;
-						default:
-							throw new UnexpectedTypeException(f[i], t[i].toString());
-						}
-					}
-					statement.addBatch();
-					n++;
-					if(n%1000==0 || n==data.size()) {
-						statement.executeBatch();
-					}
-				}
+				connection = getConnection();
+				batch(connection, sql, k, b, data);
 			} catch (SQLException e) {
 				throw e;
 			} finally {
-				if(statement!=null) statement.close();
+				release(connection);
+				invalidateCount(table);
 			}
 		}
 	}
@@ -387,8 +1674,25 @@ public abstract class DB {
 	 * @throws SQLException
 	 * @throws InvalidKeyException
 	 * @throws UnexpectedTypeException
+	 * @see #updateBatches(String, Map, List, String)
 	 */
 	public void update(String table, Map<String, String> keys, List<Properties> data, String pk) throws SQLException, UnexpectedTypeException, InvalidKeyException {
+		updateBatches(table, keys, data, pk);
+	}
+
+	/**
+	 * update the entries in the specified table
+	 * @param table the table name
+	 * @param keys the mapping key vs field
+	 * @param data the list of properties
+	 * @param pk the table key
+	 * @return the update counts of each batch
+	 * @throws SQLException
+	 * @throws InvalidKeyException
+	 * @throws UnexpectedTypeException
+	 */
+	public List<int[]> updateBatches(String table, Map<String, String> keys, List<Properties> data, String pk) throws SQLException, UnexpectedTypeException, InvalidKeyException {
+		List<int[]> counts = new ArrayList<>();
 		if(isConnected()) {
 			Map<String, Type> types = getTypes(table);
 			Object[] k = new Object[keys.size()];
@@ -414,76 +1718,213 @@ public abstract class DB {
 				i++;
 			}
 
-			String sql = String.format("UPDATE %s SET %s WHERE %s = ?", table, String.join(", ", v), pk);
-			PreparedStatement statement = null;
+			Binder[] b = binders(f, t);
+			String sql = String.format("UPDATE %s SET %s WHERE %s = ?", table, String.join(", ", v), f[k.length-1]);
+			Connection connection = null;
 			try {
-				statement = connection.prepareStatement(sql);
-				int n=0;
-				for(Properties properties : data) {
+				connection = getConnection();
+				counts = batch(connection, sql, k, b, data);
+			} catch (SQLException e) {
+				throw e;
+			} finally {
+				release(connection);
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * insert the new entries and update the existing ones in the specified table,
+	 * with MERGE on H2 and INSERT ... ON CONFLICT on PostgreSQL;
+	 * on PostgreSQL the rows whose values did not change are left untouched
+	 * @param table the table name
+	 * @param keys the mapping key vs field
+	 * @param data the list of properties
+	 * @param pk the table key
+	 * @return the update counts of each batch
+	 * @throws SQLException
+	 * @throws InvalidKeyException
+	 * @throws UnexpectedTypeException
+	 */
+	public List<int[]> upsert(String table, Map<Object, String> keys, List<Properties> data, Object pk) throws SQLException, UnexpectedTypeException, InvalidKeyException {
+		List<int[]> counts = new ArrayList<>();
+		if(isConnected()) {
+			Map<String, Type> types = getTypes(table);
+			if(!keys.containsKey(pk) || !types.containsKey(keys.get(pk))) {
+				throw new InvalidKeyException(String.valueOf(pk));
+			}
+			Object[] k = keys.keySet().toArray();
+			String[] f = new String[k.length];
+			String[] v = new String[k.length];
+			Type[]   t = new Type[k.length];
+			List<String> set = new ArrayList<>();
+			List<String> old = new ArrayList<>();
+			List<String> excluded = new ArrayList<>();
+			for(int i=0; i<k.length; i++){
+				f[i] = keys.get(k[i]);
+				v[i] = "?";
+				t[i] = types.get(f[i]);
+				if(!k[i].equals(pk)) {
+					set.add(String.format("%s = EXCLUDED.%s", f[i], f[i]));
+					old.add(String.format("%s.%s", table, f[i]));
+					excluded.add(String.format("EXCLUDED.%s", f[i]));
+				}
+			}
+			Binder[] b = binders(f, t);
+			String sql;
+			switch(getDialect()) {
+			case H2:
+				sql = String.format("MERGE INTO %s (%s) KEY(%s) VALUES (%s)", table, String.join(", ", f), keys.get(pk), String.join(", ", v));
+				break;
+			case POSTGRESQL:
+				if(set.isEmpty()) {
+					sql = String.format("INSERT INTO %s (%s) VALUES (%s) ON CONFLICT (%s) DO NOTHING", table, String.join(", ", f), String.join(", ", v), keys.get(pk));
+				} else {
+					sql = String.format("INSERT INTO %s (%s) VALUES (%s) ON CONFLICT (%s) DO UPDATE SET %s WHERE (%s) IS DISTINCT FROM (%s)", table, String.join(", ", f), String.join(", ", v), keys.get(pk), String.join(", ", set), String.join(", ", old), String.join(", ", excluded));
+				}
+				break;
+			default:
+				throw new SQLException(String.format("upsert not supported by %s", getURL()));
+			}
+			Connection connection = null;
+			try {
+				connection = getConnection();
+				counts = batch(connection, sql, k, b, data);
+			} catch (SQLException e) {
+				throw e;
+			} finally {
+				release(connection);
+				invalidateCount(table);
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * bulk load the entries in the specified table with the PostgreSQL COPY protocol, in CSV format;
+	 * the rows are streamed to the server as they are read.
+	 * Unlike {@link #insert(String, Map, List)} the values are sent as their string form and converted by the server
+	 * @param table the table name
+	 * @param keys the mapping key vs field
+	 * @param rows the entries
+	 * @return the number of rows copied
+	 * @throws SQLException
+	 */
+	public long copy(String table, Map<Object, String> keys, Iterator<Properties> rows) throws SQLException {
+		if(getDialect()!=Dialect.POSTGRESQL) {
+			throw new SQLException(String.format("COPY not supported by %s", getURL()));
+		}
+		long n = 0;
+		if(isConnected()) {
+			Object[] k = keys.keySet().toArray();
+			String[] f = new String[k.length];
+			for(int i=0; i<k.length; i++){
+				f[i] = keys.get(k[i]);
+			}
+			String sql = String.format("COPY %s (%s) FROM STDIN WITH (FORMAT csv)", table, String.join(", ", f));
+			Connection connection = null;
+			PGCopyOutputStream stream = null;
+			try {
+				connection = getConnection();
+				stream = new PGCopyOutputStream(connection.unwrap(PGConnection.class), sql, COPY_BUFFER);
+				Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), COPY_BUFFER);
+				StringBuilder line = new StringBuilder();
+				while(rows.hasNext()) {
+					Properties properties = rows.next();
+					line.setLength(0);
 					for(int i=0; i<k.length; i++) {
-						Object val = properties.get(k[i]);
-						switch(t[i]) {
-						case STRING:
-							if(val instanceof String) {
-								statement.setString(i+1, (String)val);
-							} else {
-								statement.setObject(i+1, val);
-							}
-							break;
-						case INTEGER:
-							if(val instanceof Long) {
-								statement.setLong(i+1, (Long)val);
-							} else if(val instanceof String) {
-								statement.setLong(i+1, Long.parseLong((String)val));
-							} else {
-								statement.setObject(i+1, val);
-							}
-							break;
-						case FLOAT:
-							if(val instanceof Float) {
-								statement.setFloat(i+1, (Float)val);
-							} else if(val instanceof String) {
-								statement.setFloat(i+1, Float.parseFloat((String)val));
-							} else {
-								statement.setObject(i+1, val);
-							}
-							break;
-						case BOOLEAN:
-							if(val instanceof Boolean) {
-								statement.setBoolean(i+1, (Boolean)val);
-							} else if(val instanceof String) {
-								statement.setBoolean(i+1, Boolean.parseBoolean((String)val));
-							} else {
-								statement.setObject(i+1, val);
-							}
-							break;
-						case TIMESTAMP:
-							if(val instanceof Timestamp) {
-								statement.setTimestamp(i+1, (Timestamp)val);
-							} else if(val instanceof String) {
-								SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd H:mm:ss", Locale.UK);
-								sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
-								statement.setTimestamp(i+1, Timestamp.valueOf((String)val));
-							} else {
-								statement.setObject(i+1, val);
-							}
-							break;
-						default:
-							throw new UnexpectedTypeException(f[i], t[i].toString());
-						}
+						if(i>0) line.append(',');
+						csv(line, properties.get(k[i]));
+					}
+					line.append('\n');
+					writer.append(line);
+					n++;
+				}
+				writer.flush();
+				stream.endCopy();
+				stream = null;
+			} catch (IOException e) {
+				throw new SQLException(e);
+			} finally {
+				if(stream!=null) {
+					try {
+						stream.cancelCopy();
+					} catch (SQLException e) {
 					}
 				}
+				release(connection);
+				invalidateCount(table);
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * the buffer size of the COPY stream
+	 */
+	private static final int COPY_BUFFER = 64*1024;
+
+	/**
+	 * append a value in CSV format, an absent value being written as the unquoted empty string (NULL)
+	 * @param line the line
+	 * @param val the value
+	 */
+	private static void csv(StringBuilder line, Object val) {
+		if(val==null) return;
+		String s = val.toString();
+		line.append('"');
+		for(int i=0; i<s.length(); i++) {
+			char c = s.charAt(i);
+			if(c=='"') line.append('"');
+			line.append(c);
+		}
+		line.append('"');
+	}
+
+	/**
+	 * execute a prepared statement for each entry, sending {@link #getBatchSize()} rows per batch
+	 * and committing every {@link #getBatchesPerCommit()} batches;
+	 * on failure the uncommitted batches are rolled back
+	 * @param connection the connection
+	 * @param sql the statement
+	 * @param k the keys in parameter order
+	 * @param b the binders in parameter order
+	 * @param data the list of properties
+	 * @return the update counts of each batch
+	 * @throws SQLException
+	 */
+	private List<int[]> batch(Connection connection, String sql, Object[] k, Binder[] b, List<Properties> data) throws SQLException {
+		List<int[]> counts = new ArrayList<>();
+		boolean autoCommit = connection.getAutoCommit();
+		PreparedStatement statement = null;
+		try {
+			connection.setAutoCommit(false);
+			statement = connection.prepareStatement(sql);
+			int n=0;
+			for(Properties properties : data) {
+				for(int i=0; i<k.length; i++) {
+					b[i].bind(statement, i+1, properties.get(k[i]));
+				}
 				statement.addBatch();
 				n++;
-				if(n%1000==0 || n==data.size()) {
-					statement.executeBatch();
+				if(n%batchSize==0 || n==data.size()) {
+					counts.add(statement.executeBatch());
+					if(counts.size()%batchesPerCommit==0 || n==data.size()) {
+						connection.commit();
+					}
 				}
-			} catch (SQLException e) {
-				throw e;
-			} finally {
-				if(statement!=null) statement.close();
 			}
+		} catch (SQLException e) {
+			connection.rollback();
+			throw e;
+		} catch (RuntimeException e) {
+			connection.rollback();
+			throw e;
+		} finally {
+			if(statement!=null) statement.close();
+			connection.setAutoCommit(autoCommit);
 		}
+		return counts;
 	}
 
 }
@@ -1,6 +1,7 @@
 package a.polverini.my;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -8,7 +9,7 @@ import java.util.Properties;
 
 import a.polverini.my.exceptions.NotConnectedException;
 
-public abstract class DBR extends DB {
+public abstract class DBR extends DB implements Loader {
 
 	private static final boolean DEBUG = false;
 	
@@ -18,6 +19,7 @@ public abstract class DBR extends DB {
 	 * @throws NotConnectedException
 	 * @throws SQLException
 	 */
+	@Override
 	abstract public List<Item> query() throws SQLException;
 	
 	/**
@@ -27,13 +29,61 @@ public abstract class DBR extends DB {
 		ADDITIONAL_INFORMATION_EXECUTION,
 		AUTOMATED_PROCEDURE_EXECUTION,
 		MANUAL_PROCEDURE_EXECUTION,
-		MANUAL_PROCEDURE_MEASUREMENT_EXECUTION,
+		MANUAL_PROCEDURE_STEP_EXECUTION,
 		PERFORMANCE_MEASUREMENT_EXECUTION,
 		PROCEDURE_EXECUTION,
 		SCENARIO_EXECUTION,
-		SCENARIO,EXECUTION_ADDITIONAL_INFORMATION_EXECUTION,
+		SCENARIO_EXECUTION_ADDITIONAL_INFORMATION_EXECUTION,
 		SCENARIO_EXECUTION_PERFORMANCE_MEASUREMENT_EXECUTION,
-		TEST_CASE_VERDICT
+		TEST_CASE_VERDICT;
+
+		/**
+		 * @deprecated use {@link #MANUAL_PROCEDURE_STEP_EXECUTION}
+		 */
+		@Deprecated
+		public static final Table MANUAL_PROCEDURE_MEASUREMENT_EXECUTION = MANUAL_PROCEDURE_STEP_EXECUTION;
+
+		/**
+		 * @deprecated use {@link #SCENARIO_EXECUTION}
+		 */
+		@Deprecated
+		public static final Table SCENARIO = SCENARIO_EXECUTION;
+
+		/**
+		 * @deprecated use {@link #SCENARIO_EXECUTION_ADDITIONAL_INFORMATION_EXECUTION}
+		 */
+		@Deprecated
+		public static final Table EXECUTION_ADDITIONAL_INFORMATION_EXECUTION = SCENARIO_EXECUTION_ADDITIONAL_INFORMATION_EXECUTION;
+	}
+
+	/**
+	 * @param table
+	 * @return the table name
+	 */
+	public abstract String getTable(Table table);
+	
+	/**
+	 * @param table
+	 * @return the table keys
+	 */
+	public abstract Map<Object, String> getKeys(Table table);
+
+	/**
+	 * delete the content of all the results tables at once
+	 * @throws SQLException
+	 * @see #truncate(java.util.Collection)
+	 */
+	public void truncate() throws SQLException {
+		truncate(getTables());
+	}
+
+	/**
+	 * delete the content of all the results tables in a single transaction, in foreign key order
+	 * @throws SQLException
+	 * @see #delete(java.util.Collection)
+	 */
+	public void delete() throws SQLException {
+		delete(getTables());
 	}
 
 	Item root = new Item();
@@ -61,6 +111,27 @@ public abstract class DBR extends DB {
 	public DBR(String url, String user, String pswd) throws SQLException {
 		super(url, user, pswd);
 	}
+
+	/**
+	 * constructor
+	 * @param pool the connection pool
+	 * @throws SQLException 
+	 */
+	public DBR(Pool pool) throws SQLException {
+		super(pool);
+	}
+
+	/**
+	 * @return the names of all the tables in the results database
+	 */
+	@Override
+	public List<String> getTables() {
+		List<String> tables = new ArrayList<>();
+		for(Table table : Table.values()) {
+			tables.add(getTable(table));
+		}
+		return tables;
+	}
 	
 	/**
 	 * ADDITIONAL_INFORMATION_EXECUTION table
@@ -93,8 +164,7 @@ public abstract class DBR extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBR dbr, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbr.query(table, keys);
-			for(Properties result : results) {
+			dbr.query(table, keys, (Properties result) -> {
 				Item item = new Item(dbr.additionalInformationExecutionRoot, TAG);
 				for(Object key : keys.keySet()) {
 					Object val = result.get(key);
@@ -104,7 +174,7 @@ public abstract class DBR extends DB {
 				}
 				dbr.additionalInformationExecutionPK.put(item.get(Field.PK), item);
 				if(DEBUG) System.out.println(TAG+" "+AdditionalInformationExecution.getUniqueID(item));
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbr.count(table));
 		}
 
@@ -139,19 +209,18 @@ public abstract class DBR extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBR dbr, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbr.query(table, keys);
-			for(Properties result : results) {
+			dbr.query(table, keys, (Properties result) -> {
 
 				Object procedureExecution_pk = result.get(Field.PK);
 
 				Item procedureExecution = dbr.procedureExecutionPK.get(procedureExecution_pk);
 				if(procedureExecution==null) {
 					System.err.println(ProcedureExecution.TAG+" (pk="+procedureExecution_pk+")");
-					continue;
+					return;
 				}
 				
 				if(DEBUG) System.out.println(TAG+" "+AutomatedProcedureExecution.getUniqueID(procedureExecution));
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbr.count(table));
 		}
 
@@ -186,19 +255,18 @@ public abstract class DBR extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBR dbr, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbr.query(table, keys);
-			for(Properties result : results) {
+			dbr.query(table, keys, (Properties result) -> {
 
 				Object procedureExecution_pk = result.get(Field.PK);
 
 				Item procedureExecution = dbr.procedureExecutionPK.get(procedureExecution_pk);
 				if(procedureExecution==null) {
 					System.err.println(ProcedureExecution.TAG+" (pk="+procedureExecution_pk+")");
-					continue;
+					return;
 				}
 				
 				if(DEBUG) System.out.println(TAG+" "+ManualProcedureExecution.getUniqueID(procedureExecution));
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbr.count(table));
 		}
 
@@ -239,15 +307,14 @@ public abstract class DBR extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBR dbr, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbr.query(table, keys);
-			for(Properties result : results) {
+			dbr.query(table, keys, (Properties result) -> {
 				
 				Object procedureExecution_pk = result.get(Field.MANUAL_PROCEDURE_EXECUTION_PK);
 				
 				Item procedureExecution = dbr.procedureExecutionPK.get(procedureExecution_pk);
 				if(procedureExecution==null) {
 					System.err.println(ManualProcedureStepExecution.TAG+" invalid procedure (pk="+procedureExecution_pk+")");
-					continue;
+					return;
 				}
 				
 				Item item = new Item(procedureExecution, TAG);
@@ -259,7 +326,7 @@ public abstract class DBR extends DB {
 				}
 				dbr.additionalInformationExecutionPK.put(item.get(Field.PK), item);
 				if(DEBUG) System.out.println(TAG+" "+ManualProcedureStepExecution.getUniqueID(item));
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbr.count(table));
 		}
 
@@ -296,8 +363,7 @@ public abstract class DBR extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBR dbr, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbr.query(table, keys);
-			for(Properties result : results) {
+			dbr.query(table, keys, (Properties result) -> {
 				Item item = new Item(dbr.performanceMeasurementExecutionRoot, TAG);
 				for(Object key : keys.keySet()) {
 					Object val = result.get(key);
@@ -307,7 +373,7 @@ public abstract class DBR extends DB {
 				}
 				dbr.performanceMeasurementExecutionPK.put(item.get(Field.PK), item);
 				if(DEBUG) System.out.println(TAG+" "+PerformanceMeasurementExecution.getUniqueID(item));
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbr.count(table));
 		}
 
@@ -352,14 +418,13 @@ public abstract class DBR extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBR dbr, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbr.query(table, keys);
-			for(Properties result : results) {
+			dbr.query(table, keys, (Properties result) -> {
 
 				Object scenarioExecution_pk = result.get(Field.SCENARIO_EXECUTION_PK);
 				Item scenarioExecution = dbr.scenarioExecutionPK.get(scenarioExecution_pk);
 				if(scenarioExecution==null) {
 					System.err.println(TAG+" invalid scenario-execution (pk="+scenarioExecution_pk+")");
-					continue;
+					return;
 				}
 				
 				Item item = new Item(scenarioExecution, TAG);
@@ -371,7 +436,7 @@ public abstract class DBR extends DB {
 				}
 				dbr.procedureExecutionPK.put(item.get(Field.PK), item);
 				if(DEBUG) System.out.println(TAG+" "+ProcedureExecution.getUniqueID(item));
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbr.count(table));
 		}
 
@@ -416,8 +481,7 @@ public abstract class DBR extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBR dbr, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbr.query(table, keys);
-			for(Properties result : results) {
+			dbr.query(table, keys, (Properties result) -> {
 				Item item = new Item(dbr.scenarioExecutionRoot, TAG);
 				for(Object key : keys.keySet()) {
 					Object val = result.get(key);
@@ -427,7 +491,7 @@ public abstract class DBR extends DB {
 				}
 				dbr.scenarioExecutionPK.put(item.get(Field.PK), item);
 				if(DEBUG) System.out.println(TAG+" "+ScenarioExecution.getUniqueID(item));
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbr.count(table));
 		}
 
@@ -463,28 +527,27 @@ public abstract class DBR extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBR dbr, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbr.query(table, keys);
-			for(Properties result : results) {
+			dbr.query(table, keys, (Properties result) -> {
 
 				Object scenarioExecution_pk = result.get(Field.SCENARIO_EXECUTION_PK);
 				Item scenarioExecution = dbr.scenarioExecutionPK.get(scenarioExecution_pk);
 				if(scenarioExecution==null) {
 					System.err.println(TAG+" invalid scenario-execution (pk="+scenarioExecution_pk+")");
-					continue;
+					return;
 				}
 
 				Object additioalInformationExecution_pk = result.get(Field.ADDITIONAL_INFORMATION_EXECUTIONS_PK);
 				Item additioalInformationExecution = dbr.additionalInformationExecutionPK.get(additioalInformationExecution_pk);
 				if(additioalInformationExecution==null) {
 					System.err.println(TAG+" invalid additional-information-execution (pk="+additioalInformationExecution_pk+")");
-					continue;
+					return;
 				}
 
 				Item reference = new Item(scenarioExecution, "reference");
 				reference.set(AdditionalInformationExecution.TAG, additioalInformationExecution);
 
 				if(DEBUG) System.out.println(TAG+" "+ScenarioAdditionalInformationExecution.getUniqueID(reference));
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbr.count(table));
 		}
 
@@ -520,28 +583,27 @@ public abstract class DBR extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBR dbr, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbr.query(table, keys);
-			for(Properties result : results) {
+			dbr.query(table, keys, (Properties result) -> {
 
 				Object scenarioExecution_pk = result.get(Field.SCENARIO_EXECUTION_PK);
 				Item scenarioExecution = dbr.scenarioExecutionPK.get(scenarioExecution_pk);
 				if(scenarioExecution==null) {
 					System.err.println(TAG+" invalid scenario-execution (pk="+scenarioExecution_pk+")");
-					continue;
+					return;
 				}
 
 				Object performanceMeasurementExecution_pk = result.get(Field.PERFORMANCE_MEASUREMNET_EXECUTIONS_PK);
 				Item performanceMeasurementExecution = dbr.additionalInformationExecutionPK.get(performanceMeasurementExecution_pk);
 				if(performanceMeasurementExecution==null) {
 					System.err.println(TAG+" invalid performance-measurement-execution (pk="+performanceMeasurementExecution_pk+")");
-					continue;
+					return;
 				}
 
 				Item reference = new Item(scenarioExecution, "reference");
 				reference.set(PerformanceMeasurementExecution.TAG, performanceMeasurementExecution);
 
 				if(DEBUG) System.out.println(TAG+" "+ScenarioPerformanceMeasurementExecution.getUniqueID(reference));
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbr.count(table));
 		}
 
@@ -580,8 +642,7 @@ public abstract class DBR extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBR dbr, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbr.query(table, keys);
-			for(Properties result : results) {
+			dbr.query(table, keys, (Properties result) -> {
 				Item testcaseVerdict = new Item(dbr.testcaseVerdictRoot, TAG);
 				for(Object key : keys.keySet()) {
 					Object val = result.get(key);
@@ -596,13 +657,13 @@ public abstract class DBR extends DB {
 				Item procedureExecution = dbr.procedureExecutionPK.get(procedureExecution_pk);
 				if(procedureExecution==null) {
 					System.err.println(TAG+" invalid procedure-execution (pk="+procedureExecution_pk+")");
-					continue;
+					return;
 				}
 				
 				Item reference = new Item(procedureExecution, "reference");
 				reference.set(TestCaseVerdict.TAG, testcaseVerdict);
 				
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbr.count(table));
 		}
 
@@ -1,10 +1,27 @@
 package a.polverini.my;
 
+import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
 
 import a.polverini.my.PGS.AdditionalInformation;
 import a.polverini.my.PGS.AutomatedProcedure;
@@ -26,21 +43,38 @@ import a.polverini.my.PGS.SoftwareRequirement;
 import a.polverini.my.PGS.TestArea;
 import a.polverini.my.PGS.TestCase;
 import a.polverini.my.PGS.UserRequirement;
+import a.polverini.my.exceptions.UnexpectedTypeException;
 
-public abstract class DBS extends DB {
+public abstract class DBS extends DB implements Loader {
 
 	private static final boolean DEBUG = false;
+	private static final Logger LOGGER = Logger.getLogger(DBS.class.getName());
 	
 	/**
 	 * retrieve the data from the specification database
 	 * @return the list of items
 	 * @throws SQLException
 	 */
+	@Override
 	abstract public List<Item> query() throws SQLException;
 	
-	abstract public void truncate() throws SQLException;
+	/**
+	 * delete the content of all the specification tables at once
+	 * @throws SQLException
+	 * @see #truncate(java.util.Collection)
+	 */
+	public void truncate() throws SQLException {
+		truncate(getTables());
+	}
 
-	abstract public void delete() throws SQLException;
+	/**
+	 * delete the content of all the specification tables in a single transaction, in foreign key order
+	 * @throws SQLException
+	 * @see #delete(java.util.Collection)
+	 */
+	public void delete() throws SQLException {
+		delete(getTables());
+	}
 	
 	/**
 	 * the tables in the SPECIFICATION database
@@ -155,6 +189,962 @@ public abstract class DBS extends DB {
 		}
 	}
 	
+	/**
+	 * @param table
+	 * @return the primary key numbered by {@link #nextKey(String)}, null if the table has a natural key or none
+	 */
+	public Object getGeneratedKey(Table table) {
+		Object primaryKey = getPrimaryKey(table);
+		return primaryKey!=null && "pk".equalsIgnoreCase(getKeys(table).get(primaryKey)) ? primaryKey : null;
+	}
+
+	/**
+	 * create the missing key sequences of the existing tables with a generated key, 
+	 * the setup step before numbering their rows with {@link #nextKey(String)}
+	 * @throws SQLException
+	 * @throws UnexpectedTypeException
+	 */
+	public void createSequences() throws SQLException, UnexpectedTypeException {
+		for(Table table : Table.values()) {
+			if(getGeneratedKey(table)!=null && !getTypes(getTable(table)).isEmpty()) {
+				createSequence(getTable(table));
+			}
+		}
+	}
+	
+	/**
+	 * @param table
+	 * @return the tables that must be loaded before the specified one
+	 */
+	public Table[] getDependencies(Table table) {
+		switch(table) {
+		case ADDITIONAL_INFORMATION:
+			return new Table[] {};
+		case AUTOMATED_PROCEDURE:
+			return new Table[] {Table.PROCEDURE};
+		case AUXILIARY_ROUTINE:
+			return new Table[] {Table.PROCEDURE};
+		case BASELINE:
+			return new Table[] {};
+		case BASELINE_ITEM:
+			return new Table[] {Table.BASELINE};
+		case DEPLOYMENT:
+			return new Table[] {};
+		case EDITING_LOCK:
+			return new Table[] {};
+		case FEATURE:
+			return new Table[] {Table.TESTAREA};
+		case MANUAL_PROCEDURE:
+			return new Table[] {Table.PROCEDURE};
+		case MANUAL_PROCEDURE_STEP:
+			return new Table[] {Table.PROCEDURE};
+		case PERFORMANCE_MEASUREMENT:
+			return new Table[] {Table.PROJECT};
+		case PROCEDURE:
+			return new Table[] {Table.SCENARIO};
+		case PROCEDURE_TESTCASE:
+			return new Table[] {Table.PROCEDURE, Table.TESTCASE};
+		case PROJECT:
+			return new Table[] {};
+		case PROJECT_REQUIREMENT:
+			return new Table[] {Table.PROJECT, Table.REQUIREMENT};
+		case PROJECT_REQUIREMENT_DEPLOYMENT:
+			return new Table[] {Table.PROJECT_REQUIREMENT, Table.DEPLOYMENT};
+		case REQUIREMENT:
+			return new Table[] {};
+		case REQUIREMENT_DEPLOYMENT:
+			return new Table[] {Table.REQUIREMENT, Table.DEPLOYMENT};
+		case SCENARIO:
+			return new Table[] {Table.PROJECT, Table.TESTAREA};
+		case SCENARIO_ADDITIONAL_INFORMATION:
+			return new Table[] {Table.SCENARIO, Table.ADDITIONAL_INFORMATION};
+		case SCENARIO_DEPLOYMENT:
+			return new Table[] {Table.SCENARIO, Table.DEPLOYMENT};
+		case SCENARIO_PERFORMANCE_MEASUREMENT:
+			return new Table[] {Table.SCENARIO, Table.PERFORMANCE_MEASUREMENT};
+		case SOFTWARE_REQUIREMENT:
+			return new Table[] {Table.REQUIREMENT};
+		case SOFTWARE_REQUIREMENT_USER_REQUIREMENT:
+			return new Table[] {Table.REQUIREMENT, Table.SOFTWARE_REQUIREMENT};
+		case TESTAREA:
+			return new Table[] {Table.PROJECT};
+		case TESTCASE:
+			return new Table[] {Table.FEATURE};
+		case TESTCASE_PROJECT_REQUIREMENT:
+			return new Table[] {Table.TESTCASE, Table.PROJECT_REQUIREMENT};
+		case USER_REQUIREMENT:
+			return new Table[] {Table.REQUIREMENT};
+		default:
+			return new Table[] {};
+		}
+	}
+
+	/**
+	 * @param tables the tables to sort
+	 * @return the tables sorted so that each one follows its dependencies, 
+	 * keeping the given order among the independent ones
+	 */
+	public List<Table> order(Table... tables) {
+		Set<Table> pending = new LinkedHashSet<>(Arrays.asList(tables));
+		List<Table> sorted = new ArrayList<>();
+		while(!pending.isEmpty()) {
+			Table ready = null;
+			for(Table table : pending) {
+				boolean satisfied = true;
+				for(Table dependency : getDependencies(table)) {
+					if(pending.contains(dependency)) {
+						satisfied = false;
+						break;
+					}
+				}
+				if(satisfied) {
+					ready = table;
+					break;
+				}
+			}
+			if(ready==null) {
+				throw new IllegalStateException("circular dependency among "+pending);
+			}
+			pending.remove(ready);
+			sorted.add(ready);
+		}
+		return sorted;
+	}
+
+	/**
+	 * load the specified table into the items tree
+	 * @param table
+	 * @throws SQLException
+	 */
+	public void load(Table table) throws SQLException {
+		String name = getTable(table);
+		Map<Object, String> keys = getKeys(table);
+		switch(table) {
+		case ADDITIONAL_INFORMATION:
+			AdditionalInformation.query(this, name, keys);
+			break;
+		case AUTOMATED_PROCEDURE:
+			AutomatedProcedure.query(this, name, keys);
+			break;
+		case AUXILIARY_ROUTINE:
+			AuxiliaryRoutine.query(this, name, keys);
+			break;
+		case BASELINE:
+			Baseline.query(this, name, keys);
+			break;
+		case BASELINE_ITEM:
+			BaselineItem.query(this, name, keys);
+			break;
+		case DEPLOYMENT:
+			Deployment.query(this, name, keys);
+			break;
+		case EDITING_LOCK:
+			EditingLock.query(this, name, keys);
+			break;
+		case FEATURE:
+			Feature.query(this, name, keys);
+			break;
+		case MANUAL_PROCEDURE:
+			ManualProcedure.query(this, name, keys);
+			break;
+		case MANUAL_PROCEDURE_STEP:
+			ManualProcedureStep.query(this, name, keys);
+			break;
+		case PERFORMANCE_MEASUREMENT:
+			PerformanceMeasurement.query(this, name, keys);
+			break;
+		case PROCEDURE:
+			Procedure.query(this, name, keys);
+			break;
+		case PROCEDURE_TESTCASE:
+			ProcedureTestCase.query(this, name, keys);
+			break;
+		case PROJECT:
+			Project.query(this, name, keys);
+			break;
+		case PROJECT_REQUIREMENT:
+			ProjectRequirement.query(this, name, keys);
+			break;
+		case PROJECT_REQUIREMENT_DEPLOYMENT:
+			ProjectRequirementDeployment.query(this, name, keys);
+			break;
+		case REQUIREMENT:
+			Requirement.query(this, name, keys);
+			break;
+		case REQUIREMENT_DEPLOYMENT:
+			RequirementDeployment.query(this, name, keys);
+			break;
+		case SCENARIO:
+			Scenario.query(this, name, keys);
+			break;
+		case SCENARIO_ADDITIONAL_INFORMATION:
+			ScenarioAdditionalInformation.query(this, name, keys);
+			break;
+		case SCENARIO_DEPLOYMENT:
+			ScenarioDeployment.query(this, name, keys);
+			break;
+		case SCENARIO_PERFORMANCE_MEASUREMENT:
+			ScenarioPerformanceMeasurement.query(this, name, keys);
+			break;
+		case SOFTWARE_REQUIREMENT:
+			SoftwareRequirement.query(this, name, keys);
+			break;
+		case SOFTWARE_REQUIREMENT_USER_REQUIREMENT:
+			SoftwareRequirementUserRequirement.query(this, name, keys);
+			break;
+		case TESTAREA:
+			TestArea.query(this, name, keys);
+			break;
+		case TESTCASE:
+			TestCase.query(this, name, keys);
+			break;
+		case TESTCASE_PROJECT_REQUIREMENT:
+			TestCaseProjectRequirement.query(this, name, keys);
+			break;
+		case USER_REQUIREMENT:
+			UserRequirement.query(this, name, keys);
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * the parent-child chains that can be loaded with a single ordered JOIN
+	 */
+	public enum Hierarchy {
+		TESTS(Table.PROJECT, Table.TESTAREA, Table.FEATURE, Table.TESTCASE),
+		SCENARIOS(Table.PROJECT, Table.SCENARIO, Table.PROCEDURE);
+
+		private final Table[] tables;
+
+		Hierarchy(Table... tables) {
+			this.tables = tables;
+		}
+
+		/**
+		 * @return the tables from the root down
+		 */
+		public Table[] getTables() {
+			return tables.clone();
+		}
+	}
+
+	/**
+	 * @param table
+	 * @return the field referring to the parent item, null for the items right below a section
+	 */
+	public Object getParentKey(Table table) {
+		switch(table) {
+		case BASELINE_ITEM:
+			return BaselineItem.Field.BASELINE_PK;
+		case PROJECT_REQUIREMENT:
+			return ProjectRequirement.Field.PROJECT_PK;
+		case PROJECT_REQUIREMENT_DEPLOYMENT:
+			return ProjectRequirementDeployment.Field.REQUIREMENT_PK;
+		case TESTCASE_PROJECT_REQUIREMENT:
+			return TestCaseProjectRequirement.Field.TESTCASE_PK;
+		case PROCEDURE_TESTCASE:
+			return ProcedureTestCase.Field.PROCEDURE_PK;
+		case TESTAREA:
+			return TestArea.Field.PROJECT_PK;
+		case FEATURE:
+			return Feature.Field.TESTAREA_PK;
+		case TESTCASE:
+			return TestCase.Field.FEATURE_PK;
+		case SCENARIO:
+			return Scenario.Field.PROJECT_PK;
+		case PROCEDURE:
+			return Procedure.Field.SCENARIO_PK;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * true to load the hierarchies through JOINs in {@link #query(Table...)}
+	 */
+	private boolean joins = false;
+
+	/**
+	 * @return true if the hierarchies are loaded through JOINs
+	 */
+	public boolean getJoins() {
+		return joins;
+	}
+
+	/**
+	 * @param joins true to load the hierarchies through JOINs
+	 */
+	public void setJoins(boolean joins) {
+		this.joins = joins;
+	}
+
+	/**
+	 * load a hierarchy with a single JOIN ordered by the primary keys, 
+	 * building the subtree in one streaming pass without looking up the parents;
+	 * the projects already loaded are reused, children without a parent are not retrieved,
+	 * and every item is put in its primary key map for the other loaders
+	 * @param hierarchy the hierarchy
+	 * @throws SQLException
+	 */
+	public void join(Hierarchy hierarchy) throws SQLException {
+		final Table[] tables = hierarchy.tables;
+		final Object[][] fields = new Object[tables.length][];
+		List<Object> k = new ArrayList<>();
+		List<String> columns = new ArrayList<>();
+		List<String> order = new ArrayList<>();
+		StringBuilder from = new StringBuilder();
+		for(int i=0; i<tables.length; i++) {
+			Map<Object, String> keys = getKeys(tables[i]);
+			fields[i] = keys.keySet().toArray();
+			for(Object key : fields[i]) {
+				k.add(key);
+				columns.add(String.format("t%d.%s", i, keys.get(key)));
+			}
+			if(i==0) {
+				from.append(String.format("%s t0", getTable(tables[i])));
+			} else {
+				Table parent = tables[i-1];
+				from.append(String.format(" LEFT JOIN %s t%d ON t%d.%s = t%d.%s", getTable(tables[i]), i, i, keys.get(getParentKey(tables[i])), i-1, getKeys(parent).get(getPrimaryKey(parent))));
+			}
+			order.add(String.format("t%d.%s", i, keys.get(getPrimaryKey(tables[i]))));
+		}
+		String sql = String.format("SELECT %s FROM %s ORDER BY %s", String.join(", ", columns), from, String.join(", ", order));
+
+		final Map<Object, Item> projects = new HashMap<>();
+		for(Item project : projectRoot.getChildren()) {
+			projects.put(project.get(Project.Field.PK), project);
+		}
+		final Object[] pk = new Object[tables.length];
+		final Item[] item = new Item[tables.length];
+		fetch(sql, k.toArray(), (Properties result) -> {
+			for(int i=0; i<tables.length; i++) {
+				Object key = result.get(getPrimaryKey(tables[i]));
+				if(key==null) {
+					return;
+				}
+				if(key.equals(pk[i])) {
+					continue;
+				}
+				pk[i] = key;
+				if(i==0) {
+					item[0] = projects.get(key);
+					if(item[0]!=null) {
+						continue;
+					}
+				}
+				item[i] = create(tables[i], i==0 ? projectRoot : item[i-1]);
+				for(Object field : fields[i]) {
+					Object val = result.get(field);
+					if(val!=null) {
+						item[i].set(field, val);
+					}
+				}
+				if(i==0) {
+					projects.put(key, item[0]);
+				}
+				register(tables[i], item[i]);
+				if(DEBUG) System.out.println(item[i].getTag()+" "+item[i]);
+				if(item[i] instanceof Scenario) {
+					Object testarea_pk = result.get(Scenario.Field.TESTAREA_PK);
+					Item testarea = testareaPK.get(testarea_pk);
+					if(testarea==null) {
+						System.err.println(TestArea.TAG+" (pk="+testarea_pk+")");
+					} else {
+						item[i].set(TestArea.TAG, testarea);
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * @param table a table of a hierarchy
+	 * @param parent the parent item
+	 * @return the new item
+	 */
+	private Item create(Table table, Item parent) {
+		switch(table) {
+		case PROJECT:
+			return new Project(parent);
+		case TESTAREA:
+			return new TestArea(parent);
+		case FEATURE:
+			return new Feature(parent);
+		case TESTCASE:
+			return new TestCase(parent);
+		case SCENARIO:
+			return new Scenario(parent);
+		case PROCEDURE:
+			return new Procedure(parent);
+		default:
+			throw new IllegalArgumentException(table.name());
+		}
+	}
+
+	/**
+	 * put an item of a hierarchy in its primary key map
+	 * @param table the table
+	 * @param item the item
+	 */
+	private void register(Table table, Item item) {
+		Object pk = item.get(getPrimaryKey(table));
+		switch(table) {
+		case PROJECT:
+			projectPK.put(pk, (Project)item);
+			break;
+		case TESTAREA:
+			testareaPK.put(pk, (TestArea)item);
+			break;
+		case FEATURE:
+			featurePK.put(pk, (Feature)item);
+			break;
+		case TESTCASE:
+			testcasePK.put(pk, (TestCase)item);
+			break;
+		case SCENARIO:
+			scenarioPK.put(pk, (Scenario)item);
+			break;
+		case PROCEDURE:
+			procedurePK.put(pk, (Procedure)item);
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * the number of tables fetched ahead by {@link #query(Table...)}, 1 to load them one by one
+	 */
+	private int parallelism = 1;
+
+	/**
+	 * @return the number of tables fetched ahead, 1 if they are loaded one by one
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * @param parallelism the number of tables fetched ahead on separate connections, each one held in memory until it is linked;
+	 * 1, the default, to load them one by one; capped to one less than the connections of the pool, 
+	 * as the linking needs a connection of its own while the tables are fetched
+	 */
+	public void setParallelism(int parallelism) {
+		if(parallelism<1) {
+			throw new IllegalArgumentException("parallelism "+parallelism);
+		}
+		Pool.Metrics metrics = getPool().getMetrics();
+		this.parallelism = metrics==null ? parallelism : Math.max(1, Math.min(parallelism, metrics.size-1));
+	}
+
+	/**
+	 * the rows of a table being fetched in advance, with the keys they are fetched with
+	 */
+	private static class Prefetch {
+		final Map<Object, String> keys;
+		final Future<List<Properties>> rows;
+		Prefetch(Map<Object, String> keys, Future<List<Properties>> rows) {
+			this.keys = keys;
+			this.rows = rows;
+		}
+	}
+
+	/**
+	 * the rows being fetched in advance, by table name
+	 */
+	private final Map<String, Prefetch> prefetched = new ConcurrentHashMap<>();
+
+	/**
+	 * true to take the fingerprint of the tables when they are loaded, see {@link #setTracking(boolean)}
+	 */
+	private boolean tracking = false;
+
+	/**
+	 * @return true if the fingerprint of the tables is taken when they are loaded
+	 */
+	public boolean isTracking() {
+		return tracking;
+	}
+
+	/**
+	 * @param tracking true to take the fingerprint of the tables in the same transaction as their load, 
+	 * so that {@link #refresh()} sees every change made after it, at the cost of a count and a max per table 
+	 * and of loading the tables one by one on the connection of the transaction;
+	 * false, the default, to load them without fingerprint, the first {@link #refresh()} taking it as the baseline
+	 */
+	public void setTracking(boolean tracking) {
+		this.tracking = tracking;
+	}
+
+	/**
+	 * retrieve the specified tables into the items tree, in dependency order, one load of the tree at a time;
+	 * with a parallelism above 1 and no tracking the next tables are fetched concurrently on separate connections while one is linked,
+	 * at most {@link #getParallelism()} of them at a time
+	 * @param tables the tables
+	 * @return the list of items
+	 * @throws SQLException
+	 */
+	protected synchronized List<Item> query(Table... tables) throws SQLException {
+		if(preset!=null) {
+			return read(tables, preset);
+		}
+		if(!tracking) {
+			return read(tables, null);
+		}
+		return snapshot(() -> read(tables, fingerprint(Arrays.asList(tables))));
+	}
+
+	/**
+	 * retrieve the specified tables into the items tree, in dependency order, 
+	 * prefetching them only without fingerprint, as the prefetching connections are outside the transaction it is read in
+	 * @param tables the tables
+	 * @param fingerprint the fingerprint of the tables read in the transaction of the load, null if not tracked
+	 * @return the list of items
+	 * @throws SQLException
+	 */
+	private List<Item> read(Table[] tables, Map<Table, String> fingerprint) throws SQLException {
+		// with JOINs each hierarchy below the projects is loaded in the place of its first table, so the children keep the order of the loaders
+		Map<Table, Hierarchy> joined = new EnumMap<>(Table.class);
+		Set<Table> skipped = new HashSet<>();
+		if(joins) {
+			Set<Table> requested = new HashSet<>(Arrays.asList(tables));
+			for(Hierarchy hierarchy : Hierarchy.values()) {
+				if(requested.containsAll(Arrays.asList(hierarchy.tables))) {
+					joined.put(hierarchy.tables[1], hierarchy);
+					skipped.addAll(Arrays.asList(hierarchy.tables).subList(1, hierarchy.tables.length));
+				}
+			}
+		}
+		List<Table> sorted = order(tables);
+		List<Table> loads = new ArrayList<>();
+		for(Table table : sorted) {
+			if(!skipped.contains(table)) {
+				loads.add(table);
+			}
+		}
+		ExecutorService executor = parallelism>1 && fingerprint==null ? Executors.newFixedThreadPool(parallelism) : null;
+		try {
+			int next = 0;
+			while(executor!=null && next<parallelism && next<loads.size()) {
+				prefetch(executor, loads.get(next++));
+			}
+			for(Table table : sorted) {
+				Hierarchy hierarchy = joined.get(table);
+				if(hierarchy!=null) {
+					join(hierarchy);
+				} else if(!skipped.contains(table)) {
+					load(table);
+					if(executor!=null && next<loads.size()) {
+						prefetch(executor, loads.get(next++));
+					}
+				}
+			}
+		} finally {
+			for(Prefetch prefetch : prefetched.values()) {
+				prefetch.rows.cancel(true);
+			}
+			prefetched.clear();
+			if(executor!=null) executor.shutdownNow();
+		}
+		for(Table table : tables) {
+			loaded.put(table, fingerprint!=null ? fingerprint.get(table) : null);
+		}
+		return root.getChildren();
+	}
+
+	/**
+	 * the fingerprint already read in the transaction of the running load, see {@link #query(Snapshot)}
+	 */
+	private Map<Table, String> preset;
+
+	/**
+	 * the fingerprint of each loaded table when it was loaded, null until the first {@link #refresh()} if not tracked
+	 */
+	private final Map<Table, String> loaded = new EnumMap<>(Table.class);
+
+	/**
+	 * @return the fingerprint of every existing table
+	 * @throws SQLException
+	 * @throws UnexpectedTypeException
+	 */
+	public Map<Table, String> getFingerprint() throws SQLException, UnexpectedTypeException {
+		return getFingerprint(Arrays.asList(Table.values()));
+	}
+
+	/**
+	 * the row count and the highest primary key of each existing table, read with a single statement;
+	 * changes that keep both, such as updates in place or a delete followed by an insert below the highest key, are not detected
+	 * @param tables the tables
+	 * @return the fingerprint of each table
+	 * @throws SQLException
+	 * @throws UnexpectedTypeException
+	 */
+	public Map<Table, String> getFingerprint(Collection<Table> tables) throws SQLException, UnexpectedTypeException {
+		final Map<Table, String> fingerprint = new EnumMap<>(Table.class);
+		final List<Table> existing = new ArrayList<>();
+		final List<Integer> widths = new ArrayList<>();
+		List<String> columns = new ArrayList<>();
+		for(Table table : tables) {
+			String name = getTable(table);
+			if(getTypes(name).isEmpty()) {
+				continue;
+			}
+			existing.add(table);
+			columns.add(String.format("(SELECT count(*) FROM %s)", name));
+			Object pk = getPrimaryKey(table);
+			if(pk!=null) {
+				columns.add(String.format("(SELECT max(%s) FROM %s)", getKeys(table).get(pk), name));
+			}
+			widths.add(pk!=null ? 2 : 1);
+		}
+		if(existing.isEmpty()) {
+			return fingerprint;
+		}
+		final Object[] k = new Object[columns.size()];
+		for(int i=0; i<k.length; i++) {
+			k[i] = i;
+		}
+		fetch(String.format("SELECT %s", String.join(", ", columns)), k, (Properties result) -> {
+			int column = 0;
+			for(int i=0; i<existing.size(); i++) {
+				StringBuilder value = new StringBuilder();
+				for(int j=0; j<widths.get(i); j++, column++) {
+					value.append(j==0 ? "" : "/").append(result.get(k[column]));
+				}
+				fingerprint.put(existing.get(i), value.toString());
+			}
+		});
+		return fingerprint;
+	}
+
+	/**
+	 * @param tables the tables
+	 * @return the fingerprint of each table
+	 * @throws SQLException
+	 */
+	private Map<Table, String> fingerprint(Collection<Table> tables) throws SQLException {
+		try {
+			return getFingerprint(tables);
+		} catch (UnexpectedTypeException e) {
+			throw new SQLException(e);
+		}
+	}
+
+	/**
+	 * restore the items tree from the snapshot if none of its tables has changed since it was written,
+	 * otherwise retrieve it with {@link #query()} and write a new snapshot; 
+	 * a snapshot that cannot be read is treated as stale. 
+	 * The fingerprint is read once, in the transaction of the load, and kept as the baseline of {@link #refresh()}
+	 * @param snapshot the snapshot
+	 * @return the list of items
+	 * @throws SQLException
+	 * @throws UnexpectedTypeException
+	 * @throws IOException if the new snapshot cannot be written
+	 */
+	public synchronized List<Item> query(Snapshot snapshot) throws SQLException, UnexpectedTypeException, IOException {
+		final Map<String, String> fingerprint = new LinkedHashMap<>();
+		boolean restored = snapshot(() -> {
+			Map<Table, String> current = fingerprint(Arrays.asList(Table.values()));
+			for(Map.Entry<Table, String> entry : current.entrySet()) {
+				fingerprint.put(entry.getKey().name(), entry.getValue());
+			}
+			Map<String, String> stored = null;
+			try {
+				stored = snapshot.read(fingerprint, root);
+			} catch (IOException e) {
+				LOGGER.warning("unreadable snapshot "+snapshot.getFile()+": "+e.getMessage());
+			}
+			if(stored!=null) {
+				for(Map.Entry<String, String> entry : stored.entrySet()) {
+					loaded.put(Table.valueOf(entry.getKey()), entry.getValue());
+				}
+				index(root);
+				return true;
+			}
+			preset = current;
+			try {
+				query();
+			} finally {
+				preset = null;
+			}
+			return false;
+		});
+		if(!restored) {
+			snapshot.write(fingerprint, root);
+		}
+		return root.getChildren();
+	}
+
+	/**
+	 * re-read the loaded tables whose row count or highest primary key has changed, 
+	 * together with the loaded tables depending on them, 
+	 * replacing their items in the tree and in the primary key maps.
+	 * The changes are detected with {@link #getFingerprint(Collection)}, which costs a count and a max per table
+	 * and does not see the updates in place: the tables known to be updated are re-read with {@link #refresh(Table...)}.
+	 * The tables loaded without {@link #setTracking(boolean) tracking} take the current fingerprint as the baseline 
+	 * and are not re-read, the changes made between their load and this first refresh being missed.
+	 * The fingerprint and the tables re-read are read in a single transaction
+	 * @return the tables re-read
+	 * @throws SQLException
+	 * @throws UnexpectedTypeException
+	 */
+	public synchronized Set<Table> refresh() throws SQLException, UnexpectedTypeException {
+		return snapshot(() -> {
+			Set<Table> changed = EnumSet.noneOf(Table.class);
+			Map<Table, String> fingerprint = fingerprint(loaded.keySet());
+			for(Map.Entry<Table, String> entry : loaded.entrySet()) {
+				if(entry.getValue()==null) {
+					entry.setValue(fingerprint.get(entry.getKey()));
+				} else if(!entry.getValue().equals(fingerprint.get(entry.getKey()))) {
+					changed.add(entry.getKey());
+				}
+			}
+			return reload(changed, fingerprint);
+		});
+	}
+
+	/**
+	 * re-read the specified loaded tables whether or not their fingerprint has changed, 
+	 * together with the loaded tables depending on them, 
+	 * replacing their items in the tree and in the primary key maps
+	 * @param tables the tables changed
+	 * @return the tables re-read
+	 * @throws SQLException
+	 * @throws UnexpectedTypeException
+	 */
+	public synchronized Set<Table> refresh(Table... tables) throws SQLException, UnexpectedTypeException {
+		Set<Table> changed = EnumSet.noneOf(Table.class);
+		for(Table table : tables) {
+			if(loaded.containsKey(table)) {
+				changed.add(table);
+			}
+		}
+		return snapshot(() -> reload(changed, null));
+	}
+
+	/**
+	 * re-read the changed tables and the loaded tables depending on them
+	 * @param changed the tables changed, extended with their dependents
+	 * @param fingerprint the fingerprint of the loaded tables read in the running transaction, 
+	 * null to read it here if tracked or already taken by a {@link #refresh()}
+	 * @return the tables re-read
+	 * @throws SQLException
+	 */
+	private Set<Table> reload(Set<Table> changed, Map<Table, String> fingerprint) throws SQLException {
+		if(changed.isEmpty()) {
+			return changed;
+		}
+		boolean grown = true;
+		while(grown) {
+			grown = false;
+			for(Table table : loaded.keySet()) {
+				if(changed.contains(table)) {
+					continue;
+				}
+				for(Table dependency : getDependencies(table)) {
+					if(changed.contains(dependency)) {
+						changed.add(table);
+						grown = true;
+						break;
+					}
+				}
+			}
+		}
+		prune(root, changed);
+		for(Table table : changed) {
+			clear(table);
+		}
+		// the items kept are the parents of the items re-read, whatever loaded them
+		index(root);
+		if(fingerprint==null && (tracking || loaded.values().stream().anyMatch(Objects::nonNull))) {
+			fingerprint = fingerprint(changed);
+		}
+		read(changed.toArray(new Table[changed.size()]), fingerprint);
+		return changed;
+	}
+
+	/**
+	 * remove the items of the specified tables, with their subtrees
+	 * @param parent the parent item
+	 * @param tables the tables
+	 */
+	private void prune(Item parent, Set<Table> tables) {
+		parent.remove((Item child) -> tables.contains(tableOf(child)));
+		for(Item child : parent.getChildren()) {
+			prune(child, tables);
+		}
+	}
+
+	/**
+	 * @param item an item of the tree
+	 * @return the table the item was loaded from, null for the sections
+	 */
+	private Table tableOf(Item item) {
+		if(item instanceof AdditionalInformation) return Table.ADDITIONAL_INFORMATION;
+		if(item instanceof AutomatedProcedure) return Table.AUTOMATED_PROCEDURE;
+		if(item instanceof AuxiliaryRoutine) return Table.AUXILIARY_ROUTINE;
+		if(item instanceof Baseline) return Table.BASELINE;
+		if(item instanceof BaselineItem) return Table.BASELINE_ITEM;
+		if(item instanceof Deployment) return Table.DEPLOYMENT;
+		if(item instanceof EditingLock) return Table.EDITING_LOCK;
+		if(item instanceof Feature) return Table.FEATURE;
+		if(item instanceof ManualProcedure) return Table.MANUAL_PROCEDURE;
+		if(item instanceof ManualProcedureStep) return Table.MANUAL_PROCEDURE_STEP;
+		if(item instanceof PerformanceMeasurement) return Table.PERFORMANCE_MEASUREMENT;
+		if(item instanceof Procedure) return Table.PROCEDURE;
+		if(item instanceof ProcedureTestCase) return Table.PROCEDURE_TESTCASE;
+		if(item instanceof Project) return Table.PROJECT;
+		if(item instanceof ProjectRequirement) return Table.PROJECT_REQUIREMENT;
+		if(item instanceof ProjectRequirementDeployment) return Table.PROJECT_REQUIREMENT_DEPLOYMENT;
+		if(item instanceof Requirement) return Table.REQUIREMENT;
+		if(item instanceof RequirementDeployment) return Table.REQUIREMENT_DEPLOYMENT;
+		if(item instanceof Scenario) return Table.SCENARIO;
+		if(item instanceof ScenarioAdditionalInformation) return Table.SCENARIO_ADDITIONAL_INFORMATION;
+		if(item instanceof ScenarioDeployment) return Table.SCENARIO_DEPLOYMENT;
+		if(item instanceof ScenarioPerformanceMeasurement) return Table.SCENARIO_PERFORMANCE_MEASUREMENT;
+		if(item instanceof SoftwareRequirement) return Table.SOFTWARE_REQUIREMENT;
+		if(item instanceof SoftwareRequirementUserRequirement) return Table.SOFTWARE_REQUIREMENT_USER_REQUIREMENT;
+		if(item instanceof TestArea) return Table.TESTAREA;
+		if(item instanceof TestCase) return Table.TESTCASE;
+		if(item instanceof TestCaseProjectRequirement) return Table.TESTCASE_PROJECT_REQUIREMENT;
+		if(item instanceof UserRequirement) return Table.USER_REQUIREMENT;
+		return null;
+	}
+
+	/**
+	 * empty the primary key map of the specified table
+	 * @param table the table
+	 */
+	private void clear(Table table) {
+		switch(table) {
+		case ADDITIONAL_INFORMATION:
+			additionalInformationPK.clear();
+			break;
+		case BASELINE:
+			baselinePK.clear();
+			break;
+		case DEPLOYMENT:
+			deploymentPK.clear();
+			break;
+		case EDITING_LOCK:
+			lockPK.clear();
+			break;
+		case REQUIREMENT:
+			requirementPK.clear();
+			break;
+		case PROJECT:
+			projectPK.clear();
+			break;
+		case PROJECT_REQUIREMENT:
+			projectRequirementPK.clear();
+			break;
+		case PERFORMANCE_MEASUREMENT:
+			performanceMeasurementPK.clear();
+			break;
+		case TESTAREA:
+			testareaPK.clear();
+			break;
+		case FEATURE:
+			featurePK.clear();
+			break;
+		case TESTCASE:
+			testcasePK.clear();
+			break;
+		case SCENARIO:
+			scenarioPK.clear();
+			break;
+		case PROCEDURE:
+			procedurePK.clear();
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * put the items of a restored tree in the primary key maps
+	 * @param parent the parent item
+	 */
+	private void index(Item parent) {
+		for(Item item : parent.getChildren()) {
+			if(item instanceof AdditionalInformation) {
+				additionalInformationPK.put(item.get(AdditionalInformation.Field.PK), (AdditionalInformation)item);
+			} else if(item instanceof Baseline) {
+				baselinePK.put(item.get(Baseline.Field.PK), (Baseline)item);
+			} else if(item instanceof Deployment) {
+				deploymentPK.put(item.get(Deployment.Field.PK), (Deployment)item);
+			} else if(item instanceof EditingLock) {
+				lockPK.put(item.get(EditingLock.Field.PK), (EditingLock)item);
+			} else if(item instanceof Requirement) {
+				requirementPK.put(item.get(Requirement.Field.ID), (Requirement)item);
+			} else if(item instanceof Project) {
+				projectPK.put(item.get(Project.Field.PK), (Project)item);
+			} else if(item instanceof ProjectRequirement) {
+				projectRequirementPK.put(item.get(ProjectRequirement.Field.PK), (ProjectRequirement)item);
+			} else if(item instanceof PerformanceMeasurement) {
+				performanceMeasurementPK.put(item.get(PerformanceMeasurement.Field.PK), (PerformanceMeasurement)item);
+			} else if(item instanceof TestArea) {
+				testareaPK.put(item.get(TestArea.Field.PK), (TestArea)item);
+			} else if(item instanceof Feature) {
+				featurePK.put(item.get(Feature.Field.PK), (Feature)item);
+			} else if(item instanceof TestCase) {
+				testcasePK.put(item.get(TestCase.Field.PK), (TestCase)item);
+			} else if(item instanceof Scenario) {
+				scenarioPK.put(item.get(Scenario.Field.PK), (Scenario)item);
+			} else if(item instanceof Procedure) {
+				procedurePK.put(item.get(Procedure.Field.PK), (Procedure)item);
+			}
+			index(item);
+		}
+	}
+
+	/**
+	 * start fetching the rows of a table in the background
+	 * @param executor the executor
+	 * @param table the table
+	 */
+	private void prefetch(ExecutorService executor, Table table) {
+		final String name = getTable(table);
+		final Map<Object, String> keys = getKeys(table);
+		prefetched.put(name, new Prefetch(keys, executor.submit(() -> {
+			List<Properties> rows = new ArrayList<>();
+			query(name, keys, rows::add);
+			return rows;
+		})));
+	}
+
+	/**
+	 * query the rows of a table for {@link #load(Table)}, taking them from memory if they have been fetched in advance with the same keys
+	 * @param table the table name
+	 * @param keys the mapping key vs field
+	 * @param handler the handler of each row
+	 * @throws SQLException
+	 */
+	private void rows(String table, Map<Object, String> keys, RowHandler handler) throws SQLException {
+		Prefetch prefetch = prefetched.get(table);
+		if(prefetch==null || !prefetch.keys.equals(keys) || !prefetched.remove(table, prefetch)) {
+			query(table, keys, handler);
+			return;
+		}
+		List<Properties> rows;
+		try {
+			rows = prefetch.rows.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException(e);
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof SQLException) {
+				throw (SQLException)e.getCause();
+			}
+			throw new SQLException(e.getCause());
+		}
+		for(Properties row : rows) {
+			handler.handle(row);
+		}
+	}
+
 	Item root = new Item();
 	
 	Item additionalInformationRoot = new Item(root, "information");
@@ -193,6 +1183,27 @@ public abstract class DBS extends DB {
 		super(url, user, pswd);
 	}
 
+	/**
+	 * constructor
+	 * @param pool the connection pool
+	 * @throws SQLException 
+	 */
+	public DBS(Pool pool) throws SQLException {
+		super(pool);
+	}
+
+	/**
+	 * @return the names of all the tables in the specification database
+	 */
+	@Override
+	public List<String> getTables() {
+		List<String> tables = new ArrayList<>();
+		for(Table table : Table.values()) {
+			tables.add(getTable(table));
+		}
+		return tables;
+	}
+
 	/**
 	 * ADDITIONAL_INFORMATION
 	 */
@@ -229,8 +1240,7 @@ public abstract class DBS extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBS dbs, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbs.query(table, keys);
-			for(Properties result : results) {
+			dbs.rows(table, keys, (Properties result) -> {
 				AdditionalInformation additionalInformation = new AdditionalInformation(dbs.additionalInformationRoot);
 				for(Object key : keys.keySet()) {
 					Object val = result.get(key);
@@ -240,7 +1250,7 @@ public abstract class DBS extends DB {
 				}
 				dbs.additionalInformationPK.put(additionalInformation.get(Field.PK), additionalInformation);
 				if(DEBUG) System.out.println(TAG+" "+additionalInformation);
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbs.count(table));
 		}
 
@@ -285,19 +1295,18 @@ public abstract class DBS extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBS dbs, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbs.query(table, keys);
-			for(Properties result : results) {
+			dbs.rows(table, keys, (Properties result) -> {
 
 				Object procedure_pk = result.get(Field.PK);
 
 				Item procedure = dbs.procedurePK.get(procedure_pk);
 				if(procedure==null) {
 					System.err.println(TAG+" invalid "+Procedure.TAG+" (pk="+procedure_pk+")");
-					continue;
+					return;
 				}
 				
 				if(DEBUG) System.out.println(TAG+" "+procedure);
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbs.count(table));
 		}
 
@@ -328,19 +1337,18 @@ public abstract class DBS extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBS dbs, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbs.query(table, keys);
-			for(Properties result : results) {
+			dbs.rows(table, keys, (Properties result) -> {
 
 				Object procedure_pk = result.get(Field.PK);
 
 				Item procedure = dbs.procedurePK.get(procedure_pk);
 				if(procedure==null) {
 					System.err.println(TAG+" invalid "+Procedure.TAG+" (pk="+procedure_pk+")");
-					continue;
+					return;
 				}
 				
 				if(DEBUG) System.out.println(TAG+" "+procedure);
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbs.count(table));
 		}
 		
@@ -379,8 +1387,7 @@ public abstract class DBS extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBS dbs, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbs.query(table, keys);
-			for(Properties result : results) {
+			dbs.rows(table, keys, (Properties result) -> {
 				Baseline baseline = new Baseline(dbs.baselineRoot);
 				for(Object key : keys.keySet()) {
 					Object val = result.get(key);
@@ -390,7 +1397,7 @@ public abstract class DBS extends DB {
 				}
 				dbs.baselinePK.put(baseline.get(Field.PK), baseline);
 				if(DEBUG) System.out.println(TAG+" "+baseline);
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbs.count(table));
 		}
 
@@ -444,14 +1451,13 @@ public abstract class DBS extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBS dbs, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbs.query(table, keys);
-			for(Properties result : results) {
+			dbs.rows(table, keys, (Properties result) -> {
 
 				Object baseline_pk = result.get(Field.BASELINE_PK);
 				Baseline baseline = (Baseline)dbs.baselinePK.get(baseline_pk);
 				if(baseline==null) {
 					System.err.println(Baseline.TAG+" (pk="+baseline_pk+")");
-					continue;
+					return;
 				}
 
 				BaselineItem baselineItem = new BaselineItem(baseline);
@@ -462,7 +1468,7 @@ public abstract class DBS extends DB {
 					}
 				}
 				if(DEBUG) System.out.println(TAG+" "+baselineItem);
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbs.count(table));
 		}
 
@@ -517,8 +1523,7 @@ public abstract class DBS extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBS dbs, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbs.query(table, keys);
-			for(Properties result : results) {
+			dbs.rows(table, keys, (Properties result) -> {
 				Deployment deployment = new Deployment(dbs.deploymentRoot);
 				for(Object key : keys.keySet()) {
 					Object val = result.get(key);
@@ -528,7 +1533,7 @@ public abstract class DBS extends DB {
 				}
 				dbs.deploymentPK.put(deployment.get(Field.PK), deployment);
 				if(DEBUG) System.out.println(TAG+" "+deployment);
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbs.count(table));
 		}
 
@@ -582,8 +1587,7 @@ public abstract class DBS extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBS dbs, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbs.query(table, keys);
-			for(Properties result : results) {
+			dbs.rows(table, keys, (Properties result) -> {
 				EditingLock lock = new EditingLock(dbs.lockRoot);
 				for(Object key : keys.keySet()) {
 					Object val = result.get(key);
@@ -593,7 +1597,7 @@ public abstract class DBS extends DB {
 				}
 				dbs.lockPK.put(lock.get(Field.PK), lock);
 				if(DEBUG) System.out.println(TAG+" "+lock);
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbs.count(table));
 		}
 
@@ -648,14 +1652,13 @@ public abstract class DBS extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBS dbs, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbs.query(table, keys);
-			for(Properties result : results) {
+			dbs.rows(table, keys, (Properties result) -> {
 
 				Object testarea_pk = result.get(Field.TESTAREA_PK);
 				Item testarea = dbs.testareaPK.get(testarea_pk);
 				if(testarea==null) {
 					System.err.println(TestArea.TAG+" (pk="+testarea_pk+")");
-					continue;
+					return;
 				}
 				
 				Feature feature = new Feature(testarea);
@@ -667,7 +1670,7 @@ public abstract class DBS extends DB {
 				}
 				dbs.featurePK.put(feature.get(Field.PK), feature);
 				if(DEBUG) System.out.println(TAG+" "+feature);
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbs.count(table));
 		}
 
@@ -712,19 +1715,18 @@ public abstract class DBS extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBS dbs, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbs.query(table, keys);
-			for(Properties result : results) {
+			dbs.rows(table, keys, (Properties result) -> {
 
 				Object procedure_pk = result.get(Field.PK);
 
 				Item procedure = dbs.procedurePK.get(procedure_pk);
 				if(procedure==null) {
 					System.err.println(Procedure.TAG+" (pk="+procedure_pk+")");
-					continue;
+					return;
 				}
 				
 				if(DEBUG) System.out.println(TAG+" "+procedure);
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbs.count(table));
 		}
 		
@@ -766,15 +1768,14 @@ public abstract class DBS extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBS dbs, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbs.query(table, keys);
-			for(Properties result : results) {
+			dbs.rows(table, keys, (Properties result) -> {
 
 				Object procedure_pk = result.get(Field.MANUAL_PROCEDURE_PK);
 
 				Item procedure = dbs.procedurePK.get(procedure_pk);
 				if(procedure==null) {
 					System.err.println(Procedure.TAG+" (pk="+procedure_pk+")");
-					continue;
+					return;
 				}
 
 				ManualProcedureStep step = new ManualProcedureStep(procedure);
@@ -786,7 +1787,7 @@ public abstract class DBS extends DB {
 				}
 
 				if(DEBUG) System.out.println(TAG+" "+step);
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbs.count(table));
 		}
 
@@ -842,15 +1843,14 @@ public abstract class DBS extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBS dbs, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbs.query(table, keys);
-			for(Properties result : results) {
+			dbs.rows(table, keys, (Properties result) -> {
 
 				Object project_pk = result.get(Field.PROJECT_PK);
 
 				Item project = dbs.projectPK.get(project_pk);
 				if(project==null) {
 					System.err.println(Project.TAG+" (pk="+project_pk+")");
-					continue;
+					return;
 				}
 
 				PerformanceMeasurement performanceMeasurement = new PerformanceMeasurement(project);
@@ -862,7 +1862,7 @@ public abstract class DBS extends DB {
 				}
 				dbs.performanceMeasurementPK.put(performanceMeasurement.get(Field.PK), performanceMeasurement);
 				if(DEBUG) System.out.println(TAG+" "+performanceMeasurement);
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbs.count(table));
 		}
 
@@ -918,14 +1918,13 @@ public abstract class DBS extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBS dbs, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbs.query(table, keys);
-			for(Properties result : results) {
+			dbs.rows(table, keys, (Properties result) -> {
 
 				Object scenario_pk = result.get(Field.SCENARIO_PK);
 				Item scenario = dbs.scenarioPK.get(scenario_pk);
 				if(scenario==null) {
 					System.err.println(Scenario.TAG+" (pk="+scenario_pk+")");
-					continue;
+					return;
 				}
 				
 				Procedure procedure = new Procedure(scenario);
@@ -937,7 +1936,7 @@ public abstract class DBS extends DB {
 				}
 				dbs.procedurePK.put(procedure.get(Field.PK), procedure);
 				if(DEBUG) System.out.println(TAG+" "+procedure);
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbs.count(table));
 		}
 
@@ -989,28 +1988,27 @@ public abstract class DBS extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBS dbs, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbs.query(table, keys);
-			for(Properties result : results) {
+			dbs.rows(table, keys, (Properties result) -> {
 
 				Object procedure_pk = result.get(Field.PROCEDURE_PK);
 				Item procedure = dbs.procedurePK.get(procedure_pk);
 				if(procedure==null) {
 					System.err.println(ProcedureTestCase.TAG+" invalid procedure (pk="+procedure_pk+")");
-					continue;
+					return;
 				}
 
 				Object testcases_pk = result.get(Field.TESTCASES_PK);
 				Item testcase = dbs.testcasePK.get(testcases_pk);
 				if(testcase==null) {
 					System.err.println(ProcedureTestCase.TAG+" invalid testcase (pk="+testcases_pk+")");
-					continue;
+					return;
 				}
 
 				ProcedureTestCase reference = new ProcedureTestCase(procedure);
 				reference.set(TestCase.TAG, testcase);
 
 				if(DEBUG) System.out.println(TAG+" "+reference);
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbs.count(table));
 		}
 		
@@ -1055,8 +2053,7 @@ public abstract class DBS extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBS dbs, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbs.query(table, keys);
-			for(Properties result : results) {
+			dbs.rows(table, keys, (Properties result) -> {
 				Project project = new Project(dbs.projectRoot);
 				for(Object key : keys.keySet()) {
 					Object val = result.get(key);
@@ -1066,7 +2063,7 @@ public abstract class DBS extends DB {
 				}
 				dbs.projectPK.put(project.get(Field.PK), project);
 				if(DEBUG) System.out.println(TAG+" "+project);
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbs.count(table));
 		}
 
@@ -1123,14 +2120,13 @@ public abstract class DBS extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBS dbs, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbs.query(table, keys);
-			for(Properties result : results) {
+			dbs.rows(table, keys, (Properties result) -> {
 				
 				Object project_pk = result.get(Field.PROJECT_PK);
 				Item project = dbs.projectPK.get(project_pk);
 				if(project==null) {
 					System.err.println(Project.TAG+" (pk="+project_pk+")");
-					continue;
+					return;
 				}
 
 				ProjectRequirement projectRequirement = new ProjectRequirement(project);
@@ -1146,14 +2142,14 @@ public abstract class DBS extends DB {
 				Requirement requirement = dbs.requirementPK.get(requirement_id);
 				if(requirement==null) {
 					System.err.println(Requirement.TAG+" (pk="+requirement_id+")");
-					continue;
+					return;
 				}
 
 				ProjectRequirement reference = new ProjectRequirement(projectRequirement);
 				reference.set(Requirement.TAG, requirement);
 
 				if(DEBUG) System.out.println(TAG+" "+reference);
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbs.count(table));
 		}
 
@@ -1205,28 +2201,27 @@ public abstract class DBS extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBS dbs, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbs.query(table, keys);
-			for(Properties result : results) {
+			dbs.rows(table, keys, (Properties result) -> {
 
 				Object projectRequirement_pk = result.get(Field.REQUIREMENT_PK);
 				Item projectRequirement = dbs.projectRequirementPK.get(projectRequirement_pk);
 				if(projectRequirement==null) {
 					System.err.println(ProjectRequirement.TAG+" (pk="+projectRequirement_pk+")");
-					continue;
+					return;
 				}
 
 				Object deployments_pk = result.get(Field.DEPLOYMENTS_PK);
 				Item deployment = dbs.deploymentPK.get(deployments_pk);
 				if(deployment==null) {
 					System.err.println(Deployment.TAG+" (pk="+deployments_pk+")");
-					continue;
+					return;
 				}
 
 				ProjectRequirementDeployment reference = new ProjectRequirementDeployment(projectRequirement);
 				reference.set(Deployment.TAG, deployment);
 
 				if(DEBUG) System.out.println(TAG+" "+reference);
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbs.count(table));
 		}
 		
@@ -1271,8 +2266,7 @@ public abstract class DBS extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBS dbs, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbs.query(table, keys);
-			for(Properties result : results) {
+			dbs.rows(table, keys, (Properties result) -> {
 				Requirement requirement = new Requirement(dbs.requirementRoot);
 				for(Object key : keys.keySet()) {
 					Object val = result.get(key);
@@ -1282,7 +2276,7 @@ public abstract class DBS extends DB {
 				}
 				dbs.requirementPK.put(requirement.get(Field.ID), requirement);
 				if(DEBUG) System.out.println(TAG+" "+requirement);
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbs.count(table));
 		}
 
@@ -1334,28 +2328,27 @@ public abstract class DBS extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBS dbs, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbs.query(table, keys);
-			for(Properties result : results) {
+			dbs.rows(table, keys, (Properties result) -> {
 
 				Object requirement_id = result.get(Field.REQUIREMENT_ID);
 				Item requirement = dbs.requirementPK.get(requirement_id);
 				if(requirement==null) {
 					System.err.println(Requirement.TAG+" (id="+requirement_id+")");
-					continue;
+					return;
 				}
 
 				Object deployments_pk = result.get(Field.DEPLOYMENTS_PK);
 				Item deployment = dbs.deploymentPK.get(deployments_pk);
 				if(deployment==null) {
 					System.err.println(Deployment.TAG+" (pk="+deployments_pk+")");
-					continue;
+					return;
 				}
 
 				RequirementDeployment reference = new RequirementDeployment(requirement);
 				reference.set(Deployment.TAG, deployment);
 
 				if(DEBUG) System.out.println(TAG+" "+reference);
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbs.count(table));
 		}
 
@@ -1399,15 +2392,14 @@ public abstract class DBS extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBS dbs, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbs.query(table, keys);
-			for(Properties result : results) {
+			dbs.rows(table, keys, (Properties result) -> {
 
 				Object project_pk = result.get(Field.PROJECT_PK);
 
 				Item project = dbs.projectPK.get(project_pk);
 				if(project==null) {
 					System.err.println(Project.TAG+" (pk="+project_pk+")");
-					continue;
+					return;
 				}
 
 				Scenario scenario = new Scenario(project);
@@ -1424,11 +2416,11 @@ public abstract class DBS extends DB {
 				Item testarea = dbs.testareaPK.get(testarea_pk);
 				if(testarea==null) {
 					System.err.println(TestArea.TAG+" (pk="+testarea_pk+")");
-					continue;
+					return;
 				}
 
 				scenario.set(TestArea.TAG, testarea);
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbs.count(table));
 		}
 
@@ -1480,28 +2472,27 @@ public abstract class DBS extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBS dbs, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbs.query(table, keys);
-			for(Properties result : results) {
+			dbs.rows(table, keys, (Properties result) -> {
 
 				Object scenario_pk = result.get(Field.SCENARIO_PK);
 				Item scenario = dbs.scenarioPK.get(scenario_pk);
 				if(scenario==null) {
 					System.err.println(Scenario.TAG+" (pk="+scenario_pk+")");
-					continue;
+					return;
 				}
 
 				Object informations_pk = result.get(Field.INFORMATIONS_PK);
 				Item information = dbs.additionalInformationPK.get(informations_pk);
 				if(information==null) {
 					System.err.println(AdditionalInformation.TAG+" (pk="+informations_pk+")");
-					continue;
+					return;
 				}
 
 				ScenarioAdditionalInformation reference = new ScenarioAdditionalInformation(scenario);
 				reference.set(AdditionalInformation.TAG, information);
 
 				if(DEBUG) System.out.println(TAG+" "+reference);
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbs.count(table));
 		}
 		
@@ -1539,28 +2530,27 @@ public abstract class DBS extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBS dbs, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbs.query(table, keys);
-			for(Properties result : results) {
+			dbs.rows(table, keys, (Properties result) -> {
 
 				Object scenario_pk = result.get(Field.SCENARIO_PK);
 				Item scenario = dbs.scenarioPK.get(scenario_pk);
 				if(scenario==null) {
 					System.err.println(Scenario.TAG+" (pk="+scenario_pk+")");
-					continue;
+					return;
 				}
 
 				Object deployments_pk = result.get(Field.DEPLOYMENTS_PK);
 				Item deployment = dbs.deploymentPK.get(deployments_pk);
 				if(deployment==null) {
 					System.err.println(Deployment.TAG+" (pk="+deployments_pk+")");
-					continue;
+					return;
 				}
 
 				ScenarioDeployment reference = new ScenarioDeployment(scenario);
 				reference.set(Deployment.TAG, deployment);
 
 				if(DEBUG) System.out.println(TAG+" "+reference);
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbs.count(table));
 		}
 		
@@ -1598,28 +2588,27 @@ public abstract class DBS extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBS dbs, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbs.query(table, keys);
-			for(Properties result : results) {
+			dbs.rows(table, keys, (Properties result) -> {
 
 				Object scenario_pk = result.get(Field.SCENARIO_PK);
 				Item scenario = dbs.scenarioPK.get(scenario_pk);
 				if(scenario==null) {
 					System.err.println(Scenario.TAG+" (pk="+scenario_pk+")");
-					continue;
+					return;
 				}
 
 				Object measurements_pk = result.get(Field.MEASUREMENTS_PK);
 				Item measurement = dbs.performanceMeasurementPK.get(measurements_pk);
 				if(measurement==null) {
 					System.err.println(PerformanceMeasurement.TAG+" (pk="+measurements_pk+")");
-					continue;
+					return;
 				}
 
 				ScenarioPerformanceMeasurement reference = new ScenarioPerformanceMeasurement(scenario);
 				reference.set(PerformanceMeasurement.TAG, measurement);
 
 				if(DEBUG) System.out.println(TAG+" "+reference);
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbs.count(table));
 		}
 		
@@ -1659,14 +2648,13 @@ public abstract class DBS extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBS dbs, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbs.query(table, keys);
-			for(Properties result : results) {
+			dbs.rows(table, keys, (Properties result) -> {
 				
 				Object id = result.get(Field.ID);
 				Item requirement = dbs.requirementPK.get(id);
 				if(requirement==null) {
 					System.err.println(Requirement.TAG+" (id="+id+")");
-					continue;
+					return;
 				}
 				
 				SoftwareRequirement softwareRequirement = new SoftwareRequirement(requirement);
@@ -1678,7 +2666,7 @@ public abstract class DBS extends DB {
 				}
 
 				if(DEBUG) System.out.println(TAG+" "+softwareRequirement);
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbs.count(table));
 		}
 
@@ -1730,21 +2718,20 @@ public abstract class DBS extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBS dbs, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbs.query(table, keys);
-			for(Properties result : results) {
+			dbs.rows(table, keys, (Properties result) -> {
 
 				Object user_req_id = result.get(Field.USER_REQ_ID);
 				Item ur = dbs.requirementPK.get(user_req_id);
 				if(ur==null) {
 					System.err.println(UserRequirement.TAG+" (id="+user_req_id+")");
-					continue;
+					return;
 				}
 				
 				Object soft_req_id = result.get(Field.SOFT_REQ_ID);
 				Item requirement = dbs.requirementPK.get(soft_req_id);
 				if(requirement==null) {
 					System.err.println(Requirement.TAG+" (id="+soft_req_id+")");
-					continue;
+					return;
 				}
 				
 				Item sr = null;
@@ -1756,14 +2743,14 @@ public abstract class DBS extends DB {
 				
 				if(sr==null) {
 					System.err.println(SoftwareRequirement.TAG+" (id="+soft_req_id+")");
-					continue;
+					return;
 				}
 	
 				SoftwareRequirementUserRequirement reference = new SoftwareRequirementUserRequirement(sr);
 				reference.set(UserRequirement.TAG, ur);
 
 				if(DEBUG) System.out.println(TAG+" "+reference);
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbs.count(table));
 		}
 		
@@ -1805,15 +2792,14 @@ public abstract class DBS extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBS dbs, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbs.query(table, keys);
-			for(Properties result : results) {
+			dbs.rows(table, keys, (Properties result) -> {
 
 				Object project_pk = result.get(Field.PROJECT_PK);
 
 				Item project = dbs.projectPK.get(project_pk);
 				if(project==null) {
 					System.err.println(Project.TAG+" (pk="+project_pk+")");
-					continue;
+					return;
 				}
 
 				TestArea testArea = new TestArea(project);
@@ -1825,7 +2811,7 @@ public abstract class DBS extends DB {
 				}
 				dbs.testareaPK.put(testArea.get(Field.PK), testArea);
 				if(DEBUG) System.out.println(TAG+" "+testArea);
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbs.count(table));
 		}
 
@@ -1884,14 +2870,13 @@ public abstract class DBS extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBS dbs, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbs.query(table, keys);
-			for(Properties result : results) {
+			dbs.rows(table, keys, (Properties result) -> {
 
 				Object feature_pk = result.get(Field.FEATURE_PK);
 				Item feature = dbs.featurePK.get(feature_pk);
 				if(feature==null) {
 					System.err.println(Feature.TAG+" (pk="+feature_pk+")");
-					continue;
+					return;
 				}
 
 				TestCase testcase = new TestCase(feature);
@@ -1903,7 +2888,7 @@ public abstract class DBS extends DB {
 				}
 				dbs.testcasePK.put(testcase.get(Field.PK), testcase);
 				if(DEBUG) System.out.println(TAG+" "+testcase);
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbs.count(table));
 		}
 
@@ -1955,15 +2940,14 @@ public abstract class DBS extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBS dbs, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbs.query(table, keys);
-			for(Properties result : results) {
+			dbs.rows(table, keys, (Properties result) -> {
 
 				Object testcase_pk = result.get(Field.TESTCASE_PK);
 
 				Item testcase = dbs.testcasePK.get(testcase_pk);
 				if(testcase==null) {
 					System.err.println(TestCaseProjectRequirement.TAG+" invalid testcase (pk="+testcase_pk+")");
-					continue;
+					return;
 				}
 
 				Object projectRequirements_pk = result.get(Field.REQUIREMENTS_PK);
@@ -1971,14 +2955,14 @@ public abstract class DBS extends DB {
 				ProjectRequirement projectRequirement = dbs.projectRequirementPK.get(projectRequirements_pk);
 				if(projectRequirement==null) {
 					System.err.println(TestCaseProjectRequirement.TAG+" invalid "+ProjectRequirement.TAG+" (pk="+projectRequirements_pk+")");
-					continue;
+					return;
 				}
 	
 				TestCaseProjectRequirement reference = new TestCaseProjectRequirement(testcase);
 				reference.set(ProjectRequirement.TAG, projectRequirement);
 
 				if(DEBUG) System.out.println(TAG+" "+reference);
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbs.count(table));
 		}
 	}
@@ -2019,14 +3003,13 @@ public abstract class DBS extends DB {
 		 * @throws SQLException
 		 */
 		public static void query(DBS dbs, String table, Map<Object, String> keys) throws SQLException {
-			List<Properties> results = dbs.query(table, keys);
-			for(Properties result : results) {
+			dbs.rows(table, keys, (Properties result) -> {
 				
 				Object id = result.get(Field.ID);
 				Item requirement = dbs.requirementPK.get(id);
 				if(requirement==null) {
 					System.err.println(Requirement.TAG+" (id="+id+")");
-					continue;
+					return;
 				}
 				
 				UserRequirement userRequirement = new UserRequirement(requirement);
@@ -2038,7 +3021,7 @@ public abstract class DBS extends DB {
 				}
 
 				if(DEBUG) System.out.println(TAG+" "+userRequirement);
-			}
+			});
 			if(DEBUG) System.out.println(TAG+" "+dbs.count(table));
 		}
 
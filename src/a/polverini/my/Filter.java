@@ -0,0 +1,165 @@
+package a.polverini.my;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import a.polverini.my.exceptions.InvalidKeyException;
+
+/**
+ * the conditions and the ordering of a query, on the keys of a table;
+ * rendered as a parameterised WHERE ... ORDER BY clause
+ */
+public class Filter {
+
+	/**
+	 * a condition on a key
+	 */
+	private static class Condition {
+		final Object key;
+		final String operator;
+		final Object[] values;
+		Condition(Object key, String operator, Object... values) {
+			this.key = key;
+			this.operator = operator;
+			this.values = values;
+		}
+	}
+
+	private final List<Condition> conditions = new ArrayList<>();
+	private final List<Object[]> ordering = new ArrayList<>();
+
+	/**
+	 * an empty filter
+	 */
+	public Filter() {
+	}
+
+	/**
+	 * @param filter the filter whose conditions are copied, without the ordering
+	 */
+	public Filter(Filter filter) {
+		conditions.addAll(filter.conditions);
+	}
+
+	/**
+	 * @param key the key
+	 * @param val the value, null to match the missing values
+	 * @return this filter
+	 */
+	public Filter eq(Object key, Object val) {
+		conditions.add(val==null ? new Condition(key, "IS NULL") : new Condition(key, "=", val));
+		return this;
+	}
+
+	/**
+	 * @param key the key
+	 * @param values the values, none to match nothing
+	 * @return this filter
+	 */
+	public Filter in(Object key, Collection<?> values) {
+		conditions.add(new Condition(key, "IN", values.toArray()));
+		return this;
+	}
+
+	/**
+	 * @param key the key
+	 * @param values the values, none to match nothing
+	 * @return this filter
+	 */
+	public Filter in(Object key, Object... values) {
+		return in(key, Arrays.asList(values));
+	}
+
+	/**
+	 * @param key the key
+	 * @param from the lowest value included, null if unbounded
+	 * @param to the highest value excluded, null if unbounded
+	 * @return this filter
+	 */
+	public Filter range(Object key, Object from, Object to) {
+		if(from!=null) conditions.add(new Condition(key, ">=", from));
+		if(to!=null) conditions.add(new Condition(key, "<", to));
+		return this;
+	}
+
+	/**
+	 * @param key the key
+	 * @param val the value excluded, null if unbounded
+	 * @return this filter
+	 */
+	public Filter after(Object key, Object val) {
+		if(val!=null) conditions.add(new Condition(key, ">", val));
+		return this;
+	}
+
+	/**
+	 * @param key the key
+	 * @param val the value included, null if unbounded
+	 * @return this filter
+	 */
+	public Filter upTo(Object key, Object val) {
+		if(val!=null) conditions.add(new Condition(key, "<=", val));
+		return this;
+	}
+
+	/**
+	 * @param key the key
+	 * @param ascending true for ascending, false for descending
+	 * @return this filter
+	 */
+	public Filter orderBy(Object key, boolean ascending) {
+		ordering.add(new Object[] {key, ascending});
+		return this;
+	}
+
+	/**
+	 * @param keys the mapping key vs field
+	 * @param params the list receiving the parameters, in order
+	 * @return the WHERE ... ORDER BY clause, empty if there are no conditions and no ordering
+	 * @throws InvalidKeyException if a key is not mapped to a field
+	 */
+	public String toSQL(Map<Object, String> keys, List<Object> params) throws InvalidKeyException {
+		StringBuilder sb = new StringBuilder();
+		String sep = " WHERE ";
+		for(Condition condition : conditions) {
+			String field = field(keys, condition.key);
+			sb.append(sep);
+			sep = " AND ";
+			if(condition.operator.equals("IN")) {
+				if(condition.values.length==0) {
+					sb.append("1=0");
+					continue;
+				}
+				sb.append(field).append(" IN (");
+				for(int i=0; i<condition.values.length; i++) {
+					sb.append(i==0 ? "?" : ", ?");
+					params.add(condition.values[i]);
+				}
+				sb.append(')');
+			} else {
+				sb.append(field).append(' ').append(condition.operator);
+				if(condition.values.length>0) {
+					sb.append(" ?");
+					params.add(condition.values[0]);
+				}
+			}
+		}
+		sep = " ORDER BY ";
+		for(Object[] order : ordering) {
+			sb.append(sep).append(field(keys, order[0])).append((Boolean)order[1] ? " ASC" : " DESC");
+			sep = ", ";
+		}
+		return sb.toString();
+	}
+
+	private static String field(Map<Object, String> keys, Object key) throws InvalidKeyException {
+		String field = keys.get(key);
+		if(field==null) {
+			throw new InvalidKeyException(String.valueOf(key));
+		}
+		return field;
+	}
+}
@@ -5,6 +5,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import a.polverini.my.DBR.Table;
 import a.polverini.my.exceptions.NotConnectedException;
 
 public class H2R extends DBR {
@@ -19,6 +20,62 @@ public class H2R extends DBR {
 		return String.format("jdbc:h2:tcp://%s:%d/%s", host, port, path);
 	}
 	
+	/** {@inheritDoc} */
+	public String getTable(Table table) {
+		switch(table) {
+		case ADDITIONAL_INFORMATION_EXECUTION:
+			return AdditionalInformationExecution.TABLE;
+		case AUTOMATED_PROCEDURE_EXECUTION:
+			return AutomatedProcedureExecution.TABLE;
+		case MANUAL_PROCEDURE_EXECUTION:
+			return ManualProcedureExecution.TABLE;
+		case MANUAL_PROCEDURE_STEP_EXECUTION:
+			return ManualProcedureStepExecution.TABLE;
+		case PERFORMANCE_MEASUREMENT_EXECUTION:
+			return PerformanceMeasurementExecution.TABLE;
+		case PROCEDURE_EXECUTION:
+			return ProcedureExecution.TABLE;
+		case SCENARIO_EXECUTION:
+			return ScenarioExecution.TABLE;
+		case SCENARIO_EXECUTION_ADDITIONAL_INFORMATION_EXECUTION:
+			return ScenarioAdditionalInformationExecution.TABLE;
+		case SCENARIO_EXECUTION_PERFORMANCE_MEASUREMENT_EXECUTION:
+			return ScenarioPerformanceMeasurementExecution.TABLE;
+		case TEST_CASE_VERDICT:
+			return TestCaseVerdict.TABLE;
+		default:
+			return null;
+		}
+	}
+	
+	/** {@inheritDoc} */
+	public Map<Object, String> getKeys(Table table) {
+		switch(table) {
+		case ADDITIONAL_INFORMATION_EXECUTION:
+			return AdditionalInformationExecution.KEYS;
+		case AUTOMATED_PROCEDURE_EXECUTION:
+			return AutomatedProcedureExecution.KEYS;
+		case MANUAL_PROCEDURE_EXECUTION:
+			return ManualProcedureExecution.KEYS;
+		case MANUAL_PROCEDURE_STEP_EXECUTION:
+			return ManualProcedureStepExecution.KEYS;
+		case PERFORMANCE_MEASUREMENT_EXECUTION:
+			return PerformanceMeasurementExecution.KEYS;
+		case PROCEDURE_EXECUTION:
+			return ProcedureExecution.KEYS;
+		case SCENARIO_EXECUTION:
+			return ScenarioExecution.KEYS;
+		case SCENARIO_EXECUTION_ADDITIONAL_INFORMATION_EXECUTION:
+			return ScenarioAdditionalInformationExecution.KEYS;
+		case SCENARIO_EXECUTION_PERFORMANCE_MEASUREMENT_EXECUTION:
+			return ScenarioPerformanceMeasurementExecution.KEYS;
+		case TEST_CASE_VERDICT:
+			return TestCaseVerdict.KEYS;
+		default:
+			return null;
+		}
+	}
+	
 	/**
 	 * retrieve the data from the results database
 	 * @return a list of items
@@ -72,6 +129,14 @@ public class H2R extends DBR {
 	public H2R(String name) throws SQLException {
 		this( URL(name, "localhost", 9092), "sa", "" );
 	}
+
+	/**
+	 * @param pool the connection pool
+	 * @throws SQLException 
+	 */
+	public H2R(Pool pool) throws SQLException {
+		super(pool);
+	}
 	
 	/**
 	 * ADDITIONAL_INFORMATION_EXECUTION table
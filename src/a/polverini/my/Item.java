@@ -1,8 +1,11 @@
 package a.polverini.my;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
+import java.util.function.Predicate;
 
 public class Item {
 
@@ -41,12 +44,51 @@ public class Item {
 		return tag;
 	}
 
-	private Properties properties = new Properties();
-	
 	/**
-	 * @return the item properties
+	 * the number of constants of each enum used as keys
+	 */
+	private static final ClassValue<Integer> CONSTANTS = new ClassValue<Integer>() {
+		@Override
+		protected Integer computeValue(Class<?> type) {
+			return type.getEnumConstants().length;
+		}
+	};
+
+	/**
+	 * the enum of the field keys, taken from the first one set
+	 */
+	private Class<?> fields;
+
+	/**
+	 * the field values, indexed by ordinal
+	 */
+	private Object[] values;
+
+	/**
+	 * the other keys and values, in pairs
+	 */
+	private Object[] others;
+
+	/**
+	 * @return a copy of the item properties
 	 */
 	public Properties getProperties() {
+		Properties properties = new Properties();
+		if(values!=null) {
+			Object[] keys = fields.getEnumConstants();
+			for(int i=0; i<values.length; i++) {
+				if(values[i]!=null) {
+					properties.put(keys[i], values[i]);
+				}
+			}
+		}
+		if(others!=null) {
+			for(int i=0; i<others.length; i+=2) {
+				if(others[i]!=null && others[i+1]!=null) {
+					properties.put(others[i], others[i+1]);
+				}
+			}
+		}
 		return properties;
 	}
 
@@ -55,7 +97,17 @@ public class Item {
 	 * @return the corresponding property
 	 */
 	public Object get(Object key) {
-		return properties.get(key);
+		if(values!=null && key instanceof Enum && ((Enum<?>)key).getDeclaringClass()==fields) {
+			return values[((Enum<?>)key).ordinal()];
+		}
+		if(others!=null) {
+			for(int i=0; i<others.length; i+=2) {
+				if(key.equals(others[i])) {
+					return others[i+1];
+				}
+			}
+		}
+		return null;
 	}
 
 	/**
@@ -63,33 +115,78 @@ public class Item {
 	 * @param val
 	 */
 	public void set(Object key, Object val) {
-		properties.put(key, val);
+		if(key instanceof Enum) {
+			Class<?> type = ((Enum<?>)key).getDeclaringClass();
+			if(values==null) {
+				fields = type;
+				values = new Object[CONSTANTS.get(type)];
+			}
+			if(type==fields) {
+				values[((Enum<?>)key).ordinal()] = val;
+				return;
+			}
+		}
+		if(others==null) {
+			others = new Object[] {key, val};
+			return;
+		}
+		int free = -1;
+		for(int i=0; i<others.length; i+=2) {
+			if(key.equals(others[i])) {
+				others[i+1] = val;
+				return;
+			}
+			if(others[i]==null) {
+				free = i;
+			}
+		}
+		if(free<0) {
+			free = others.length;
+			others = Arrays.copyOf(others, others.length+2);
+		}
+		others[free] = key;
+		others[free+1] = val;
 	}
 	
 	/**
-	 * the children list
+	 * the children list, created with the first child
 	 */
-	private List<Item> children = new ArrayList<>();
+	private List<Item> children;
 
 	/**
 	 * @return true if the item has children
 	 */
 	public boolean hasChildren() {
-		return !children.isEmpty();
+		return children!=null && !children.isEmpty();
 	}
 	
 	/**
 	 * @return the item children
 	 */
 	public List<Item> getChildren() {
+		if(children==null) {
+			return Collections.emptyList();
+		}
 		return this.children;
 	}
 
+	/**
+	 * @param filter the children to remove
+	 */
+	public void remove(Predicate<Item> filter) {
+		if(children!=null) {
+			children.removeIf(filter);
+		}
+	}
+
 	/**
 	 * @param child
 	 */
 	public void add(Item child) {
+		if(children==null) {
+			children = new ArrayList<>(4);
+		}
 		children.add(child);
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,18 @@
+package a.polverini.my;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * a database whose content is loaded as a tree of items
+ */
+public interface Loader {
+
+	/**
+	 * retrieve the data from the database
+	 * @return the list of items
+	 * @throws SQLException
+	 */
+	public List<Item> query() throws SQLException;
+
+}
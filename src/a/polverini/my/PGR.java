@@ -5,6 +5,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import a.polverini.my.DBR.Table;
 import a.polverini.my.exceptions.NotConnectedException;
 
 public class PGR extends DBR {
@@ -31,6 +32,62 @@ public class PGR extends DBR {
 		return String.format("jdbc:postgresql://%s:%d/%s", "localhost", 5432, path);
 	}
 	
+	/** {@inheritDoc} */
+	public String getTable(Table table) {
+		switch(table) {
+		case ADDITIONAL_INFORMATION_EXECUTION:
+			return AdditionalInformationExecution.TABLE;
+		case AUTOMATED_PROCEDURE_EXECUTION:
+			return AutomatedProcedureExecution.TABLE;
+		case MANUAL_PROCEDURE_EXECUTION:
+			return ManualProcedureExecution.TABLE;
+		case MANUAL_PROCEDURE_STEP_EXECUTION:
+			return ManualProcedureStepExecution.TABLE;
+		case PERFORMANCE_MEASUREMENT_EXECUTION:
+			return PerformanceMeasurementExecution.TABLE;
+		case PROCEDURE_EXECUTION:
+			return ProcedureExecution.TABLE;
+		case SCENARIO_EXECUTION:
+			return ScenarioExecution.TABLE;
+		case SCENARIO_EXECUTION_ADDITIONAL_INFORMATION_EXECUTION:
+			return ScenarioAdditionalInformationExecution.TABLE;
+		case SCENARIO_EXECUTION_PERFORMANCE_MEASUREMENT_EXECUTION:
+			return ScenarioPerformanceMeasurementExecution.TABLE;
+		case TEST_CASE_VERDICT:
+			return TestCaseVerdict.TABLE;
+		default:
+			return null;
+		}
+	}
+	
+	/** {@inheritDoc} */
+	public Map<Object, String> getKeys(Table table) {
+		switch(table) {
+		case ADDITIONAL_INFORMATION_EXECUTION:
+			return AdditionalInformationExecution.KEYS;
+		case AUTOMATED_PROCEDURE_EXECUTION:
+			return AutomatedProcedureExecution.KEYS;
+		case MANUAL_PROCEDURE_EXECUTION:
+			return ManualProcedureExecution.KEYS;
+		case MANUAL_PROCEDURE_STEP_EXECUTION:
+			return ManualProcedureStepExecution.KEYS;
+		case PERFORMANCE_MEASUREMENT_EXECUTION:
+			return PerformanceMeasurementExecution.KEYS;
+		case PROCEDURE_EXECUTION:
+			return ProcedureExecution.KEYS;
+		case SCENARIO_EXECUTION:
+			return ScenarioExecution.KEYS;
+		case SCENARIO_EXECUTION_ADDITIONAL_INFORMATION_EXECUTION:
+			return ScenarioAdditionalInformationExecution.KEYS;
+		case SCENARIO_EXECUTION_PERFORMANCE_MEASUREMENT_EXECUTION:
+			return ScenarioPerformanceMeasurementExecution.KEYS;
+		case TEST_CASE_VERDICT:
+			return TestCaseVerdict.KEYS;
+		default:
+			return null;
+		}
+	}
+	
 	/**
 	 * retrieve the data from the results database
 	 * @return a list of items
@@ -78,6 +135,14 @@ public class PGR extends DBR {
 	public PGR(String name) throws SQLException {
 		this(name, "postgres", "postgres");
 	}
+
+	/**
+	 * @param pool the connection pool
+	 * @throws SQLException 
+	 */
+	public PGR(Pool pool) throws SQLException {
+		super(pool);
+	}
 	
 	/**
 	 * ADDITIONAL_INFORMATION_EXECUTION table
@@ -160,78 +160,6 @@ public class PGS extends DBS {
 		}
 	}
 
-	public void truncate() throws SQLException {
-		String[] SPECIFICATION_TABLES = new String[] {
-				AdditionalInformation.TABLE, 
-				Baseline.TABLE, 
-				BaselineItem.TABLE, 
-				Deployment.TABLE, 
-				EditingLock.TABLE, 
-				Requirement.TABLE, 
-				RequirementDeployment.TABLE, 
-				UserRequirement.TABLE, 
-				SoftwareRequirement.TABLE, 
-				SoftwareRequirementUserRequirement.TABLE, 
-				Project.TABLE, 
-				ProjectRequirement.TABLE, 
-				ProjectRequirementDeployment.TABLE, 
-				PerformanceMeasurement.TABLE, 
-				TestArea.TABLE, 
-				Feature.TABLE, 
-				TestCase.TABLE, 
-				TestCaseProjectRequirement.TABLE, 
-				Scenario.TABLE, 
-				ScenarioAdditionalInformation.TABLE, 
-				ScenarioDeployment.TABLE, 
-				ScenarioPerformanceMeasurement.TABLE, 
-				Procedure.TABLE, 
-				ProcedureTestCase.TABLE, 
-				AutomatedProcedure.TABLE, 
-				ManualProcedure.TABLE, 
-				ManualProcedureStep.TABLE, 
-				AuxiliaryRoutine.TABLE, 
-		};
-		for(String table : SPECIFICATION_TABLES) {
-			truncate(table);
-		}
-	}
-	
-	public void delete() throws SQLException {
-		String[] SPECIFICATION_TABLES = new String[] {
-				ProcedureTestCase.TABLE, 
-				ManualProcedureStep.TABLE, 
-				ManualProcedure.TABLE, 
-				AutomatedProcedure.TABLE, 
-				AuxiliaryRoutine.TABLE, 
-				Procedure.TABLE, 
-				ScenarioAdditionalInformation.TABLE, 
-				ScenarioPerformanceMeasurement.TABLE, 
-				ScenarioDeployment.TABLE, 
-				Scenario.TABLE, 
-				TestCaseProjectRequirement.TABLE, 
-				TestCase.TABLE, 
-				Feature.TABLE, 
-				TestArea.TABLE, 
-				PerformanceMeasurement.TABLE, 
-				ProjectRequirementDeployment.TABLE, 
-				ProjectRequirement.TABLE, 
-				Project.TABLE, 
-				AdditionalInformation.TABLE, 
-				SoftwareRequirementUserRequirement.TABLE, 
-				SoftwareRequirement.TABLE, 
-				UserRequirement.TABLE, 
-				RequirementDeployment.TABLE, 
-				Requirement.TABLE, 
-				BaselineItem.TABLE, 
-				Baseline.TABLE, 
-				Deployment.TABLE, 
-				EditingLock.TABLE, 
-		};
-		for(String table : SPECIFICATION_TABLES) {
-			delete(table);
-		}
-	}
-	
 	/**
 	 * retrieve the data from the specification database
 	 * @return a list of items
@@ -239,52 +167,44 @@ public class PGS extends DBS {
 	 * @throws SQLException
 	 */
 	public List<Item> query() throws SQLException {
-		
-		// AdditionalInformation
-		AdditionalInformation.query(this);
-
-		// Baseline
-		Baseline.query(this);
-		BaselineItem.query(this);
-
-		// Deployment
-		Deployment.query(this);
-		
-		// EditingLock
-		EditingLock.query(this);
-		
-		// Requirement
-		Requirement.query(this);
-		RequirementDeployment.query(this);
-		UserRequirement.query(this);
-		SoftwareRequirement.query(this);
-		SoftwareRequirementUserRequirement.query(this);
-
-		// Project
-		Project.query(this);
-		ProjectRequirement.query(this);
-		ProjectRequirementDeployment.query(this);
-		PerformanceMeasurement.query(this);
-		
-		// TestArea
-		TestArea.query(this);
-		Feature.query(this);
-		TestCase.query(this);
-		TestCaseProjectRequirement.query(this);
-		
-		// Scenario
-		Scenario.query(this);
-		ScenarioAdditionalInformation.query(this);
-		ScenarioDeployment.query(this);
-		ScenarioPerformanceMeasurement.query(this);
-		Procedure.query(this);
-		ProcedureTestCase.query(this);
-		AutomatedProcedure.query(this);
-		ManualProcedure.query(this);
-		ManualProcedureStep.query(this);
-		AuxiliaryRoutine.query(this);
-		
-		return root.getChildren();
+		return query(
+				// AdditionalInformation
+				Table.ADDITIONAL_INFORMATION,
+				// Baseline
+				Table.BASELINE,
+				Table.BASELINE_ITEM,
+				// Deployment
+				Table.DEPLOYMENT,
+				// EditingLock
+				Table.EDITING_LOCK,
+				// Requirement
+				Table.REQUIREMENT,
+				Table.REQUIREMENT_DEPLOYMENT,
+				Table.USER_REQUIREMENT,
+				Table.SOFTWARE_REQUIREMENT,
+				Table.SOFTWARE_REQUIREMENT_USER_REQUIREMENT,
+				// Project
+				Table.PROJECT,
+				Table.PROJECT_REQUIREMENT,
+				Table.PROJECT_REQUIREMENT_DEPLOYMENT,
+				Table.PERFORMANCE_MEASUREMENT,
+				// TestArea
+				Table.TESTAREA,
+				Table.FEATURE,
+				Table.TESTCASE,
+				Table.TESTCASE_PROJECT_REQUIREMENT,
+				// Scenario
+				Table.SCENARIO,
+				Table.SCENARIO_ADDITIONAL_INFORMATION,
+				Table.SCENARIO_DEPLOYMENT,
+				Table.SCENARIO_PERFORMANCE_MEASUREMENT,
+				Table.PROCEDURE,
+				Table.PROCEDURE_TESTCASE,
+				Table.AUTOMATED_PROCEDURE,
+				Table.MANUAL_PROCEDURE,
+				Table.MANUAL_PROCEDURE_STEP,
+				Table.AUXILIARY_ROUTINE
+		);
 	}
 
 	/**
@@ -305,6 +225,14 @@ public class PGS extends DBS {
 		this(url, "postgres", "postgres");
 	}
 
+	/**
+	 * @param pool the connection pool
+	 * @throws SQLException 
+	 */
+	public PGS(Pool pool) throws SQLException {
+		super(pool);
+	}
+
 	/**
 	 * ADDITIONAL_INFORMATION
 	 */
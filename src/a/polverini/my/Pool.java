@@ -0,0 +1,334 @@
+package a.polverini.my;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * the connection pool used by the database
+ */
+public interface Pool {
+
+	/**
+	 * @return the database URL
+	 */
+	public String getURL();
+
+	/**
+	 * borrow a connection from the pool
+	 * @return the connection
+	 * @throws SQLException
+	 */
+	public Connection borrow() throws SQLException;
+
+	/**
+	 * give back a borrowed connection to the pool;
+	 * a pending transaction is rolled back and the auto-commit restored
+	 * @param connection the connection
+	 */
+	public void release(Connection connection);
+
+	/**
+	 * @return true if the pool is open
+	 */
+	public boolean isOpen();
+
+	/**
+	 * close the pool and all the idle connections
+	 */
+	public void close();
+
+	/**
+	 * @return the pool metrics
+	 */
+	public Metrics getMetrics();
+
+	/**
+	 * the pool metrics
+	 */
+	public static class Metrics {
+
+		public final int size;
+		public final int active;
+		public final int idle;
+		public final long borrowed;
+		public final long created;
+		public final long evicted;
+		public final long invalidated;
+		public final long timeouts;
+
+		public Metrics(int size, int active, int idle, long borrowed, long created, long evicted, long invalidated, long timeouts) {
+			this.size = size;
+			this.active = active;
+			this.idle = idle;
+			this.borrowed = borrowed;
+			this.created = created;
+			this.evicted = evicted;
+			this.invalidated = invalidated;
+			this.timeouts = timeouts;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public String toString() {
+			return String.format("size=%d active=%d idle=%d borrowed=%d created=%d evicted=%d invalidated=%d timeouts=%d", size, active, idle, borrowed, created, evicted, invalidated, timeouts);
+		}
+	}
+
+	/**
+	 * a pool with a bounded number of connections, validated on borrow and evicted when idle;
+	 * a minimum of idle connections is kept open, as closing the last connection of an H2 in-memory database drops it
+	 */
+	public static class Bounded implements Pool {
+
+		public static final int  DEFAULT_SIZE 		= 4;
+		public static final long DEFAULT_IDLE 		= 5*60*1000;
+		public static final long DEFAULT_WAIT 		= 30*1000;
+		public static final int  DEFAULT_VALIDATION = 5;
+		public static final int  DEFAULT_MIN_IDLE 	= 1;
+
+		/**
+		 * an idle connection and the time it was given back
+		 */
+		private static class Entry {
+			final Connection connection;
+			final long released;
+			Entry(Connection connection, long released) {
+				this.connection = connection;
+				this.released = released;
+			}
+		}
+
+		private final String url;
+		private final String user;
+		private final String pswd;
+		private final int size;
+		private final long idleTimeout;
+		private final long waitTimeout;
+		private final int validationTimeout;
+		private final int minIdle;
+
+		private final Semaphore permits;
+		private final Deque<Entry> idle = new ArrayDeque<>();
+		private volatile boolean open = true;
+
+		private long borrowed;
+		private long created;
+		private long evicted;
+		private long invalidated;
+		private long timeouts;
+
+		/**
+		 * constructor
+		 * @param url the database URL
+		 * @param user the database user
+		 * @param pswd the database password
+		 * @param size the maximum number of connections
+		 * @param idleTimeout the milliseconds after which an idle connection is evicted
+		 * @param waitTimeout the milliseconds to wait for a free connection
+		 * @param validationTimeout the seconds to wait for the validation on borrow
+		 */
+		public Bounded(String url, String user, String pswd, int size, long idleTimeout, long waitTimeout, int validationTimeout) {
+			this(url, user, pswd, size, idleTimeout, waitTimeout, validationTimeout, DEFAULT_MIN_IDLE);
+		}
+
+		/**
+		 * constructor
+		 * @param url the database URL
+		 * @param user the database user
+		 * @param pswd the database password
+		 * @param size the maximum number of connections
+		 * @param idleTimeout the milliseconds after which an idle connection is evicted
+		 * @param waitTimeout the milliseconds to wait for a free connection
+		 * @param validationTimeout the seconds to wait for the validation on borrow
+		 * @param minIdle the idle connections never evicted
+		 */
+		public Bounded(String url, String user, String pswd, int size, long idleTimeout, long waitTimeout, int validationTimeout, int minIdle) {
+			this.url = url;
+			this.user = user;
+			this.pswd = pswd;
+			this.size = size;
+			this.idleTimeout = idleTimeout;
+			this.waitTimeout = waitTimeout;
+			this.validationTimeout = validationTimeout;
+			this.minIdle = Math.max(0, minIdle);
+			this.permits = new Semaphore(size, true);
+		}
+
+		/**
+		 * constructor
+		 * @param url the database URL
+		 * @param user the database user
+		 * @param pswd the database password
+		 * @param size the maximum number of connections
+		 */
+		public Bounded(String url, String user, String pswd, int size) {
+			this(url, user, pswd, size, DEFAULT_IDLE, DEFAULT_WAIT, DEFAULT_VALIDATION);
+		}
+
+		/**
+		 * constructor
+		 * @param url the database URL
+		 * @param user the database user
+		 * @param pswd the database password
+		 */
+		public Bounded(String url, String user, String pswd) {
+			this(url, user, pswd, DEFAULT_SIZE);
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public String getURL() {
+			return url;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public boolean isOpen() {
+			return open;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public Connection borrow() throws SQLException {
+			if(!open) {
+				throw new SQLException("pool closed!");
+			}
+			try {
+				if(!permits.tryAcquire(waitTimeout, TimeUnit.MILLISECONDS)) {
+					synchronized(idle) {
+						timeouts++;
+					}
+					throw new SQLException(String.format("no free connection after %d ms", waitTimeout));
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SQLException("interrupted while waiting for a connection", e);
+			}
+			try {
+				Connection connection = null;
+				while(connection==null) {
+					Entry entry;
+					boolean expired;
+					synchronized(idle) {
+						entry = idle.pollFirst();
+						// the most recent entry has expired, so have the others: keep the minimum open
+						expired = entry!=null && System.currentTimeMillis()-entry.released > idleTimeout && idle.size()>=minIdle;
+					}
+					if(entry==null) {
+						break;
+					}
+					if(expired) {
+						discard(entry.connection);
+						synchronized(idle) {
+							evicted++;
+						}
+					} else if(!entry.connection.isValid(validationTimeout)) {
+						discard(entry.connection);
+						synchronized(idle) {
+							invalidated++;
+						}
+					} else {
+						connection = entry.connection;
+					}
+				}
+				if(connection==null) {
+					connection = DriverManager.getConnection(url, user, pswd);
+					synchronized(idle) {
+						created++;
+					}
+				}
+				synchronized(idle) {
+					borrowed++;
+				}
+				return connection;
+			} catch (SQLException e) {
+				permits.release();
+				throw e;
+			} catch (RuntimeException e) {
+				permits.release();
+				throw e;
+			}
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public void release(Connection connection) {
+			if(connection==null) return;
+			try {
+				if(!open || connection.isClosed()) {
+					discard(connection);
+				} else {
+					if(!connection.getAutoCommit()) {
+						connection.rollback();
+						connection.setAutoCommit(true);
+					}
+					synchronized(idle) {
+						idle.addFirst(new Entry(connection, System.currentTimeMillis()));
+					}
+				}
+			} catch (SQLException e) {
+				discard(connection);
+			} finally {
+				permits.release();
+			}
+			evict();
+		}
+
+		/**
+		 * close the connections idle for longer than the idle timeout, but the minimum idle ones
+		 */
+		public void evict() {
+			long now = System.currentTimeMillis();
+			while(true) {
+				Entry entry;
+				synchronized(idle) {
+					entry = idle.peekLast();
+					if(entry==null || now-entry.released <= idleTimeout || idle.size()<=minIdle) {
+						return;
+					}
+					idle.pollLast();
+					evicted++;
+				}
+				discard(entry.connection);
+			}
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public void close() {
+			open = false;
+			while(true) {
+				Entry entry;
+				synchronized(idle) {
+					entry = idle.pollFirst();
+				}
+				if(entry==null) break;
+				discard(entry.connection);
+			}
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public Metrics getMetrics() {
+			synchronized(idle) {
+				return new Metrics(size, size-permits.availablePermits(), idle.size(), borrowed, created, evicted, invalidated, timeouts);
+			}
+		}
+
+		/**
+		 * @param connection the connection to close
+		 */
+		private void discard(Connection connection) {
+			try {
+				connection.close();
+			} catch (SQLException e) {
+			}
+		}
+	}
+
+}
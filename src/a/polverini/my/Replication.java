@@ -0,0 +1,531 @@
+package a.polverini.my;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import a.polverini.my.exceptions.InvalidKeyException;
+import a.polverini.my.exceptions.UnexpectedTypeException;
+
+/**
+ * copy the tables of a source database into a target database, e.g. PGS to H2S or PGR to H2R;
+ * each table is streamed through a bounded queue from a reader to a batched writer,
+ * and the tables are copied in parallel, each one once the tables it references are done.
+ * With a checkpoint file the copy can be resumed after a failure, from the last batch written
+ */
+public class Replication {
+
+	private static final String TAG = "Replication";
+
+	private static final Logger LOGGER = Logger.getLogger(Replication.class.getName());
+
+	/**
+	 * the receiver of the progress of each table
+	 */
+	public interface Progress {
+		/**
+		 * @param table the target table name
+		 * @param rows the rows written so far
+		 * @param done true once the table is complete
+		 */
+		public void progress(String table, long rows, boolean done);
+	}
+
+	/**
+	 * a table to be copied
+	 */
+	private static class Mapping {
+		final String source;
+		final Map<Object, String> sourceKeys;
+		final String target;
+		final Map<Object, String> targetKeys;
+		final Object pk;
+		Mapping(String source, Map<Object, String> sourceKeys, String target, Map<Object, String> targetKeys, Object pk) {
+			this.source = source;
+			this.sourceKeys = sourceKeys;
+			this.target = target;
+			this.targetKeys = targetKeys;
+			this.pk = pk;
+		}
+	}
+
+	/**
+	 * a key range of a table differing between the source and the target
+	 */
+	public static class Difference {
+
+		/** the target table name */
+		public final String table;
+		/** the lowest key included, null for the whole table */
+		public final Long from;
+		/** the highest key excluded, null for the whole table */
+		public final Long to;
+		/** the entries in the source range */
+		public final int sourceRows;
+		/** the entries in the target range */
+		public final int targetRows;
+
+		public Difference(String table, Long from, Long to, int sourceRows, int targetRows) {
+			this.table = table;
+			this.from = from;
+			this.to = to;
+			this.sourceRows = sourceRows;
+			this.targetRows = targetRows;
+		}
+
+		@Override
+		public String toString() {
+			return table+(from==null ? "" : "["+from+", "+to+")")+" "+sourceRows+"/"+targetRows;
+		}
+	}
+
+	private final DB source;
+	private final DB target;
+	private final Map<String, Mapping> mappings = new LinkedHashMap<>();
+	private int parallelism = 4;
+	private int queueSize = 10000;
+	private boolean replace = false;
+	private Progress progress;
+	private File checkpoint;
+	private int maxLeaves = 1<<16;
+	private int leafSize = 64;
+	private final Properties state = new Properties();
+
+	/**
+	 * @param source the source database
+	 * @param target the target database
+	 */
+	public Replication(DB source, DB target) {
+		this.source = source;
+		this.target = target;
+	}
+
+	/**
+	 * @param source the source specification database
+	 * @param target the target specification database
+	 * @return the replication of all the specification tables
+	 */
+	public static Replication of(DBS source, DBS target) {
+		Replication replication = new Replication(source, target);
+		for(DBS.Table table : DBS.Table.values()) {
+			replication.add(source.getTable(table), source.getKeys(table), target.getTable(table), target.getKeys(table));
+		}
+		return replication;
+	}
+
+	/**
+	 * @param source the source results database
+	 * @param target the target results database
+	 * @return the replication of all the results tables
+	 */
+	public static Replication of(DBR source, DBR target) {
+		Replication replication = new Replication(source, target);
+		for(DBR.Table table : DBR.Table.values()) {
+			replication.add(source.getTable(table), source.getKeys(table), target.getTable(table), target.getKeys(table));
+		}
+		return replication;
+	}
+
+	/**
+	 * add a table, the fields of the two tables are matched by key; the key named PK, if any, is the primary key
+	 * @param sourceTable the source table name
+	 * @param sourceKeys the mapping key vs field of the source table
+	 * @param targetTable the target table name
+	 * @param targetKeys the mapping key vs field of the target table
+	 * @return this replication
+	 */
+	public Replication add(String sourceTable, Map<Object, String> sourceKeys, String targetTable, Map<Object, String> targetKeys) {
+		Object pk = null;
+		for(Object key : sourceKeys.keySet()) {
+			if(key.toString().equals("PK") && targetKeys.containsKey(key)) {
+				pk = key;
+			}
+		}
+		return add(sourceTable, sourceKeys, targetTable, targetKeys, pk);
+	}
+
+	/**
+	 * add a table, the fields of the two tables are matched by key
+	 * @param sourceTable the source table name
+	 * @param sourceKeys the mapping key vs field of the source table
+	 * @param targetTable the target table name
+	 * @param targetKeys the mapping key vs field of the target table
+	 * @param pk the primary key, unique and ordered, null if none; a table without is copied again from the start when resumed
+	 * @return this replication
+	 */
+	public Replication add(String sourceTable, Map<Object, String> sourceKeys, String targetTable, Map<Object, String> targetKeys, Object pk) {
+		Map<Object, String> keys = new LinkedHashMap<>();
+		for(Map.Entry<Object, String> entry : sourceKeys.entrySet()) {
+			if(targetKeys.containsKey(entry.getKey())) {
+				keys.put(entry.getKey(), entry.getValue());
+			}
+		}
+		mappings.put(targetTable, new Mapping(sourceTable, keys, targetTable, targetKeys, pk));
+		return this;
+	}
+
+	/**
+	 * @param parallelism the number of tables copied at the same time
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * @param queueSize the maximum number of rows read and not written yet, per table
+	 */
+	public void setQueueSize(int queueSize) {
+		this.queueSize = queueSize;
+	}
+
+	/**
+	 * @param replace true to truncate the target tables first
+	 */
+	public void setReplace(boolean replace) {
+		this.replace = replace;
+	}
+
+	/**
+	 * @param progress the receiver of the progress of each table
+	 */
+	public void setProgress(Progress progress) {
+		this.progress = progress;
+	}
+
+	/**
+	 * @param checkpoint the file recording the progress of each table, null for none; 
+	 * when it exists the copy is resumed, when the copy is complete and verified it is deleted
+	 */
+	public void setCheckpoint(File checkpoint) {
+		this.checkpoint = checkpoint;
+	}
+
+	/**
+	 * copy the tables; with a checkpoint, verify the row counts and the checksums at the end
+	 * @return the rows written in each target table
+	 * @throws SQLException
+	 * @throws UnexpectedTypeException
+	 * @throws InterruptedException
+	 * @throws IOException if the checkpoint cannot be read or written
+	 * @throws InvalidKeyException if a primary key is not in the mapping of its table
+	 */
+	public Map<String, Long> run() throws SQLException, UnexpectedTypeException, InterruptedException, IOException, InvalidKeyException {
+		state.clear();
+		if(checkpoint!=null && checkpoint.exists()) {
+			InputStream stream = new FileInputStream(checkpoint);
+			try {
+				state.load(stream);
+			} finally {
+				stream.close();
+			}
+			LOGGER.info("resume "+checkpoint);
+		} else if(replace) {
+			target.truncate(mappings.keySet());
+		}
+		Map<String, Set<String>> references = target.getReferences(mappings.keySet());
+		List<String> order = new ArrayList<>(DB.referencingFirst(references));
+		Collections.reverse(order);
+
+		Map<String, Long> rows = Collections.synchronizedMap(new LinkedHashMap<>());
+		ExecutorService writers = Executors.newFixedThreadPool(Math.max(1, parallelism));
+		ExecutorService readers = Executors.newCachedThreadPool();
+		try {
+			Map<String, CompletableFuture<Void>> futures = new HashMap<>();
+			for(String table : order) {
+				List<CompletableFuture<Void>> dependencies = new ArrayList<>();
+				for(String referenced : references.get(table)) {
+					// a table in a cycle may reference one not started yet
+					if(futures.containsKey(referenced)) {
+						dependencies.add(futures.get(referenced));
+					}
+				}
+				Mapping mapping = mappings.get(table);
+				futures.put(table, CompletableFuture.allOf(dependencies.toArray(new CompletableFuture<?>[0])).thenRunAsync(() -> {
+					try {
+						rows.put(table, copy(mapping, readers));
+					} catch (Exception e) {
+						throw new CompletionException(e);
+					}
+				}, writers));
+			}
+			CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0])).join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof SQLException) throw (SQLException)cause;
+			if(cause instanceof UnexpectedTypeException) throw (UnexpectedTypeException)cause;
+			if(cause instanceof InterruptedException) throw (InterruptedException)cause;
+			if(cause instanceof IOException) throw (IOException)cause;
+			if(cause instanceof InvalidKeyException) throw (InvalidKeyException)cause;
+			throw e;
+		} finally {
+			readers.shutdownNow();
+			writers.shutdownNow();
+		}
+		if(checkpoint!=null) {
+			List<String> mismatches = verify();
+			if(!mismatches.isEmpty()) {
+				for(String table : mismatches) {
+					state.remove(table+".rows");
+					state.remove(table+".done");
+					state.remove(table+".bound");
+				}
+				save();
+				throw new SQLException("replication mismatch: "+mismatches);
+			}
+			Files.deleteIfExists(checkpoint.toPath());
+		}
+		return rows;
+	}
+
+	/**
+	 * @param maxLeaves the maximum number of key ranges a table is split in by {@link #diff()}
+	 */
+	public void setMaxLeaves(int maxLeaves) {
+		this.maxLeaves = Math.max(1, maxLeaves);
+	}
+
+	/**
+	 * @param leafSize the width of the key ranges compared by {@link #diff()}
+	 */
+	public void setLeafSize(int leafSize) {
+		this.leafSize = Math.max(1, leafSize);
+	}
+
+	/**
+	 * find the key ranges differing between the source and the target tables: 
+	 * each table is split in key ranges {@link #setLeafSize(int)} keys wide, or wider if they would be more than {@link #setMaxLeaves(int)}, 
+	 * whose digests are computed with a single pass on each side and compared locally, 
+	 * the adjacent differing ranges being merged; a table without primary key is compared as a whole
+	 * @return the differing ranges
+	 * @throws SQLException
+	 * @throws InvalidKeyException
+	 */
+	public List<Difference> diff() throws SQLException, InvalidKeyException {
+		List<Difference> differences = new ArrayList<>();
+		for(Mapping mapping : mappings.values()) {
+			if(mapping.pk==null) {
+				int sourceRows = source.count(mapping.source, DB.Count.EXACT);
+				int targetRows = target.count(mapping.target, DB.Count.EXACT);
+				if(sourceRows!=targetRows || source.checksum(mapping.source, mapping.sourceKeys)!=target.checksum(mapping.target, mapping.targetKeys)) {
+					differences.add(new Difference(mapping.target, null, null, sourceRows, targetRows));
+				}
+				continue;
+			}
+			long[] sourceRange = source.getRange(mapping.source, mapping.sourceKeys, mapping.pk);
+			long[] targetRange = target.getRange(mapping.target, mapping.targetKeys, mapping.pk);
+			if(sourceRange==null && targetRange==null) {
+				continue;
+			}
+			long from = Math.min(sourceRange==null ? Long.MAX_VALUE : sourceRange[0], targetRange==null ? Long.MAX_VALUE : targetRange[0]);
+			long to = Math.max(sourceRange==null ? Long.MIN_VALUE : sourceRange[1], targetRange==null ? Long.MIN_VALUE : targetRange[1])+1;
+			int leaves = (int)Math.max(1, Math.min(maxLeaves, (to-from+leafSize-1)/leafSize));
+			DB.Digest[] sourceDigests = source.digest(mapping.source, mapping.sourceKeys, mapping.pk, from, to, leaves);
+			DB.Digest[] targetDigests = target.digest(mapping.target, mapping.targetKeys, mapping.pk, from, to, leaves);
+			Difference difference = null;
+			for(int i=0; i<sourceDigests.length; i++) {
+				DB.Digest s = sourceDigests[i];
+				DB.Digest t = targetDigests[i];
+				if(s.count==t.count && s.hash==t.hash) {
+					difference = null;
+					continue;
+				}
+				if(difference==null) {
+					difference = new Difference(mapping.target, s.from, s.to, s.count, t.count);
+				} else {
+					differences.remove(differences.size()-1);
+					difference = new Difference(mapping.target, difference.from, s.to, difference.sourceRows+s.count, difference.targetRows+t.count);
+				}
+				differences.add(difference);
+			}
+		}
+		return differences;
+	}
+
+	/**
+	 * compare the source and the target tables; a table copied with a checkpoint is compared up to the highest key 
+	 * the source had when its copy started, as the rows added later are not copied, 
+	 * the others by their row counts and their checksums as a whole
+	 * @return the target tables that differ from the source
+	 * @throws SQLException
+	 * @throws InvalidKeyException if a primary key is not in the mapping of its table
+	 */
+	public List<String> verify() throws SQLException, InvalidKeyException {
+		List<String> mismatches = new ArrayList<>();
+		for(Mapping mapping : mappings.values()) {
+			Object bound = mapping.pk==null ? null : decode(state.getProperty(mapping.target+".bound"));
+			boolean match;
+			if(bound!=null) {
+				// a missing, an extra or a different entry changes the sum of the hashes
+				Filter filter = new Filter().upTo(mapping.pk, bound);
+				match = source.checksum(mapping.source, mapping.sourceKeys, filter)==target.checksum(mapping.target, mapping.targetKeys, filter);
+			} else {
+				match = source.count(mapping.source, DB.Count.EXACT)==target.count(mapping.target, DB.Count.EXACT)
+						&& source.checksum(mapping.source, mapping.sourceKeys)==target.checksum(mapping.target, mapping.targetKeys);
+			}
+			if(!match) {
+				LOGGER.warning("mismatch "+mapping.source+" -> "+mapping.target);
+				mismatches.add(mapping.target);
+			}
+		}
+		return mismatches;
+	}
+
+	/**
+	 * write the checkpoint, replacing the file only once complete
+	 * @throws IOException
+	 */
+	private void save() throws IOException {
+		synchronized (state) {
+			File tmp = new File(checkpoint.getPath()+".tmp");
+			OutputStream stream = new FileOutputStream(tmp);
+			try {
+				state.store(stream, TAG);
+			} finally {
+				stream.close();
+			}
+			Files.move(tmp.toPath(), checkpoint.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * @param val a key value
+	 * @return the value as stored in the checkpoint, with its type
+	 */
+	private static String encode(Object val) {
+		if(val instanceof Integer || val instanceof Long) {
+			return "L:"+val;
+		}
+		return "S:"+val;
+	}
+
+	/**
+	 * @param val a key value as stored in the checkpoint
+	 * @return the key value
+	 */
+	private static Object decode(String val) {
+		if(val==null || val.isEmpty()) {
+			return null;
+		}
+		return val.startsWith("L:") ? (Object)Long.valueOf(val.substring(2)) : val.substring(2);
+	}
+
+	/**
+	 * stream a table from the source to the target, from its checkpoint if any; 
+	 * with a checkpoint the rows are copied in key order up to the highest key of the source when the copy started, 
+	 * and a resumed copy continues after the highest key in the target, as the last batches may have been written after the checkpoint
+	 * @return the rows written
+	 */
+	private long copy(Mapping mapping, ExecutorService readers) throws Exception {
+		String table = mapping.target;
+		if(Boolean.parseBoolean(state.getProperty(table+".done"))) {
+			long n = Long.parseLong(state.getProperty(table+".rows", "0"));
+			if(progress!=null) progress.progress(table, n, true);
+			return n;
+		}
+		long resumed = 0;
+		Object after = null;
+		if(state.containsKey(table+".rows") || state.containsKey(table+".bound")) {
+			if(mapping.pk!=null) {
+				after = target.max(table, mapping.targetKeys, mapping.pk);
+				resumed = target.count(table, DB.Count.EXACT);
+			} else {
+				target.delete(Collections.singleton(table));
+			}
+		}
+		Object bound = null;
+		if(checkpoint!=null && mapping.pk!=null) {
+			if(!state.containsKey(table+".bound")) {
+				Object max = source.max(mapping.source, mapping.sourceKeys, mapping.pk);
+				synchronized (state) {
+					state.setProperty(table+".bound", max==null ? "" : encode(max));
+					save();
+				}
+			}
+			bound = decode(state.getProperty(table+".bound"));
+		}
+		final Filter filter = checkpoint!=null && mapping.pk!=null ? new Filter().after(mapping.pk, after).upTo(mapping.pk, bound).orderBy(mapping.pk, true) : null;
+		BlockingQueue<Properties> queue = new ArrayBlockingQueue<>(Math.max(1, queueSize));
+		DB.RowHandler handler = properties -> {
+			try {
+				queue.put(properties);
+			} catch (InterruptedException e) {
+				throw new SQLException("interrupted", e);
+			}
+		};
+		Future<?> reader = readers.submit(() -> {
+			if(filter==null) {
+				source.query(mapping.source, mapping.sourceKeys, handler);
+			} else {
+				source.query(mapping.source, mapping.sourceKeys, filter, handler);
+			}
+			return null;
+		});
+		long n = resumed;
+		int batchSize = Math.max(1, target.getBatchSize());
+		List<Properties> batch = new ArrayList<>(batchSize);
+		try {
+			while(true) {
+				Properties properties = queue.poll(100, TimeUnit.MILLISECONDS);
+				if(properties!=null) {
+					batch.add(properties);
+				}
+				// all the rows are queued once the reader is done
+				boolean end = properties==null && reader.isDone() && queue.isEmpty();
+				if(batch.size()==batchSize || (end && !batch.isEmpty())) {
+					target.insert(table, mapping.targetKeys, batch);
+					n += batch.size();
+					if(checkpoint!=null) {
+						synchronized (state) {
+							state.setProperty(table+".rows", Long.toString(n));
+							save();
+						}
+					}
+					batch.clear();
+					if(progress!=null) progress.progress(table, n, false);
+				}
+				if(end) {
+					break;
+				}
+			}
+			reader.get();
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof Exception ? (Exception)e.getCause() : e;
+		} finally {
+			reader.cancel(true);
+		}
+		if(checkpoint!=null) {
+			synchronized (state) {
+				state.setProperty(table+".rows", Long.toString(n));
+				state.setProperty(table+".done", "true");
+				save();
+			}
+		}
+		if(progress!=null) progress.progress(table, n, true);
+		LOGGER.info(mapping.source+" -> "+table+" "+n);
+		return n;
+	}
+}
@@ -0,0 +1,419 @@
+package a.polverini.my;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * a binary snapshot of an items tree, valid as long as the database fingerprint does not change;
+ * the enum constants are stored by name and only the subclasses of {@link Item} are instantiated
+ */
+public class Snapshot {
+
+	private static final int MAGIC 		= 0x4D594442;
+	private static final int VERSION 	= 3;
+
+	private static final byte NULL 		= 0;
+	private static final byte STRING 	= 1;
+	private static final byte INTEGER 	= 2;
+	private static final byte LONG 		= 3;
+	private static final byte BOOLEAN 	= 4;
+	private static final byte DOUBLE 	= 5;
+	private static final byte TIMESTAMP = 6;
+	private static final byte ENUM 		= 7;
+	private static final byte ITEM 		= 8;
+	private static final byte SHORT 	= 9;
+	private static final byte BYTE 		= 10;
+	private static final byte FLOAT 	= 11;
+	private static final byte DECIMAL 	= 12;
+	private static final byte BIGINT 	= 13;
+	private static final byte DATE 		= 14;
+	private static final byte TIME 		= 15;
+	private static final byte BYTES 	= 16;
+	private static final byte UUID_ 	= 17;
+
+	private final File file;
+
+	/**
+	 * constructor
+	 * @param file the snapshot file
+	 */
+	public Snapshot(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * @return the snapshot file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * write the tree below the root, replacing the snapshot file only once complete
+	 * @param fingerprint the fingerprint of each table the tree was loaded from
+	 * @param root the root item
+	 * @throws IOException
+	 */
+	public void write(Map<String, String> fingerprint, Item root) throws IOException {
+		Map<Item, Integer> index = new IdentityHashMap<>();
+		number(root, index);
+		Map<Class<?>, Integer> classes = new HashMap<>();
+		File tmp = new File(file.getPath()+".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1<<16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(fingerprint.size());
+			for(Map.Entry<String, String> entry : fingerprint.entrySet()) {
+				writeString(out, entry.getKey());
+				writeString(out, entry.getValue());
+			}
+			out.writeInt(root.getChildren().size());
+			for(Item section : root.getChildren()) {
+				writeString(out, section.getTag());
+				writeChildren(out, section, index, classes);
+			}
+		} finally {
+			out.close();
+		}
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * restore the tree below the root if every table in the snapshot still has the same fingerprint;
+	 * the sections already below the root are filled by tag, and left as they were if the snapshot cannot be decoded
+	 * @param fingerprint the current fingerprint of each table
+	 * @param root the root item
+	 * @return the fingerprint stored in the snapshot, null if there is no snapshot or it is stale
+	 * @throws IOException if the snapshot cannot be decoded
+	 */
+	public Map<String, String> read(Map<String, String> fingerprint, Item root) throws IOException {
+		if(!file.exists()) {
+			return null;
+		}
+		ByteBuffer in;
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			if(channel.size()>Integer.MAX_VALUE) {
+				throw new IOException("snapshot too large: "+file);
+			}
+			in = ByteBuffer.allocate((int)channel.size());
+			while(in.hasRemaining()) {
+				if(channel.read(in)<0) {
+					throw new IOException("truncated snapshot: "+file);
+				}
+			}
+			in.flip();
+		} finally {
+			channel.close();
+		}
+		// the items are created below their sections, as their parent is final: on failure they are detached again
+		Map<Item, Integer> sizes = new IdentityHashMap<>();
+		sizes.put(root, root.getChildren().size());
+		for(Item section : root.getChildren()) {
+			sizes.put(section, section.getChildren().size());
+		}
+		boolean complete = false;
+		try {
+			if(in.getInt()!=MAGIC) {
+				throw new IOException("not a snapshot: "+file);
+			}
+			if(in.getInt()!=VERSION) {
+				return null;
+			}
+			Map<String, String> stored = new LinkedHashMap<>();
+			int tables = in.getInt();
+			for(int i=0; i<tables; i++) {
+				String table = readString(in);
+				String value = readString(in);
+				if(!fingerprint.containsKey(table) || !Objects.equals(fingerprint.get(table), value)) {
+					return null;
+				}
+				stored.put(table, value);
+			}
+			List<Item> items = new ArrayList<>();
+			items.add(root);
+			List<Class<?>> classes = new ArrayList<>();
+			List<Object[]> references = new ArrayList<>();
+			int sections = in.getInt();
+			for(int i=0; i<sections; i++) {
+				String tag = readString(in);
+				Item section = null;
+				for(Item child : root.getChildren()) {
+					if(Objects.equals(child.getTag(), tag)) {
+						section = child;
+						break;
+					}
+				}
+				if(section==null) {
+					section = new Item(root, tag);
+				}
+				items.add(section);
+				readChildren(in, section, items, classes, references);
+			}
+			for(Object[] reference : references) {
+				((Item)reference[0]).set(reference[1], items.get((Integer)reference[2]));
+			}
+			complete = true;
+			return stored;
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// underflow, indexes, casts, names and numbers out of a truncated or altered file
+			throw new IOException("corrupted snapshot: "+file, e);
+		} finally {
+			if(!complete) {
+				for(Map.Entry<Item, Integer> entry : sizes.entrySet()) {
+					List<Item> children = entry.getKey().getChildren();
+					if(children.size()>entry.getValue()) {
+						children.subList(entry.getValue(), children.size()).clear();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * number the items in pre-order, so that the references can be written as indexes
+	 */
+	private static void number(Item item, Map<Item, Integer> index) {
+		index.put(item, index.size());
+		for(Item child : item.getChildren()) {
+			number(child, index);
+		}
+	}
+
+	private static void writeChildren(DataOutputStream out, Item parent, Map<Item, Integer> index, Map<Class<?>, Integer> classes) throws IOException {
+		out.writeInt(parent.getChildren().size());
+		for(Item item : parent.getChildren()) {
+			writeClass(out, item.getClass(), classes);
+			writeString(out, item.getTag());
+			Properties properties = item.getProperties();
+			out.writeInt(properties.size());
+			for(Map.Entry<Object, Object> entry : properties.entrySet()) {
+				writeValue(out, entry.getKey(), index, classes);
+				writeValue(out, entry.getValue(), index, classes);
+			}
+			writeChildren(out, item, index, classes);
+		}
+	}
+
+	private static void readChildren(ByteBuffer in, Item parent, List<Item> items, List<Class<?>> classes, List<Object[]> references) throws IOException, ReflectiveOperationException {
+		int size = in.getInt();
+		for(int i=0; i<size; i++) {
+			Class<?> type = readClass(in, classes);
+			if(!Item.class.isAssignableFrom(type)) {
+				throw new IOException("not an item: "+type.getName());
+			}
+			String tag = readString(in);
+			Item item;
+			if(type==Item.class) {
+				item = new Item(parent, tag);
+			} else {
+				Constructor<?> constructor = type.getConstructor(Item.class);
+				item = (Item)constructor.newInstance(parent);
+			}
+			items.add(item);
+			int fields = in.getInt();
+			for(int j=0; j<fields; j++) {
+				Object key = readValue(in, classes);
+				if(in.get(in.position())==ITEM) {
+					in.get();
+					references.add(new Object[] {item, key, in.getInt()});
+				} else {
+					item.set(key, readValue(in, classes));
+				}
+			}
+			readChildren(in, item, items, classes, references);
+		}
+	}
+
+	private static void writeClass(DataOutputStream out, Class<?> type, Map<Class<?>, Integer> classes) throws IOException {
+		Integer index = classes.get(type);
+		if(index==null) {
+			out.writeInt(classes.size());
+			writeString(out, type.getName());
+			classes.put(type, classes.size());
+		} else {
+			out.writeInt(index);
+		}
+	}
+
+	private static Class<?> readClass(ByteBuffer in, List<Class<?>> classes) throws IOException, ClassNotFoundException {
+		int index = in.getInt();
+		if(index==classes.size()) {
+			// loaded without initialisation: the caller checks the class before using it
+			classes.add(Class.forName(readString(in), false, Snapshot.class.getClassLoader()));
+		}
+		return classes.get(index);
+	}
+
+	private static void writeValue(DataOutputStream out, Object val, Map<Item, Integer> index, Map<Class<?>, Integer> classes) throws IOException {
+		if(val==null) {
+			out.writeByte(NULL);
+		} else if(val instanceof String) {
+			out.writeByte(STRING);
+			writeString(out, (String)val);
+		} else if(val instanceof Integer) {
+			out.writeByte(INTEGER);
+			out.writeInt((Integer)val);
+		} else if(val instanceof Long) {
+			out.writeByte(LONG);
+			out.writeLong((Long)val);
+		} else if(val instanceof Boolean) {
+			out.writeByte(BOOLEAN);
+			out.writeBoolean((Boolean)val);
+		} else if(val instanceof Double) {
+			out.writeByte(DOUBLE);
+			out.writeDouble((Double)val);
+		} else if(val instanceof Timestamp) {
+			out.writeByte(TIMESTAMP);
+			out.writeLong(((Timestamp)val).getTime());
+			out.writeInt(((Timestamp)val).getNanos());
+		} else if(val instanceof Enum) {
+			out.writeByte(ENUM);
+			writeClass(out, ((Enum<?>)val).getDeclaringClass(), classes);
+			writeString(out, ((Enum<?>)val).name());
+		} else if(val instanceof Short) {
+			out.writeByte(SHORT);
+			out.writeShort((Short)val);
+		} else if(val instanceof Byte) {
+			out.writeByte(BYTE);
+			out.writeByte((Byte)val);
+		} else if(val instanceof Float) {
+			out.writeByte(FLOAT);
+			out.writeFloat((Float)val);
+		} else if(val instanceof BigDecimal) {
+			out.writeByte(DECIMAL);
+			writeString(out, val.toString());
+		} else if(val instanceof BigInteger) {
+			out.writeByte(BIGINT);
+			writeString(out, val.toString());
+		} else if(val instanceof Date) {
+			out.writeByte(DATE);
+			out.writeLong(((Date)val).getTime());
+		} else if(val instanceof Time) {
+			out.writeByte(TIME);
+			out.writeLong(((Time)val).getTime());
+		} else if(val instanceof byte[]) {
+			out.writeByte(BYTES);
+			out.writeInt(((byte[])val).length);
+			out.write((byte[])val);
+		} else if(val instanceof UUID) {
+			out.writeByte(UUID_);
+			out.writeLong(((UUID)val).getMostSignificantBits());
+			out.writeLong(((UUID)val).getLeastSignificantBits());
+		} else if(val instanceof Item) {
+			Integer i = index.get(val);
+			if(i==null) {
+				throw new IOException("reference outside the tree: "+val);
+			}
+			out.writeByte(ITEM);
+			out.writeInt(i);
+		} else {
+			throw new IOException("unsupported value: "+val.getClass().getName());
+		}
+	}
+
+	private static Object readValue(ByteBuffer in, List<Class<?>> classes) throws IOException, ClassNotFoundException {
+		byte type = in.get();
+		switch(type) {
+		case NULL:
+			return null;
+		case STRING:
+			return readString(in);
+		case INTEGER:
+			return in.getInt();
+		case LONG:
+			return in.getLong();
+		case BOOLEAN:
+			return in.get()!=0;
+		case DOUBLE:
+			return in.getDouble();
+		case TIMESTAMP:
+			Timestamp timestamp = new Timestamp(in.getLong());
+			timestamp.setNanos(in.getInt());
+			return timestamp;
+		case ENUM:
+			return readEnum(readClass(in, classes), readString(in));
+		case SHORT:
+			return in.getShort();
+		case BYTE:
+			return in.get();
+		case FLOAT:
+			return in.getFloat();
+		case DECIMAL:
+			return new BigDecimal(readString(in));
+		case BIGINT:
+			return new BigInteger(readString(in));
+		case DATE:
+			return new Date(in.getLong());
+		case TIME:
+			return new Time(in.getLong());
+		case BYTES:
+			byte[] bytes = new byte[in.getInt()];
+			in.get(bytes);
+			return bytes;
+		case UUID_:
+			return new UUID(in.getLong(), in.getLong());
+		default:
+			throw new IOException("unexpected value type "+type);
+		}
+	}
+
+	/**
+	 * @param type the enum class
+	 * @param name the name of the constant
+	 * @return the constant
+	 * @throws IOException if the class is not an enum
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Object readEnum(Class<?> type, String name) throws IOException {
+		if(!type.isEnum()) {
+			throw new IOException("not an enum: "+type.getName());
+		}
+		return Enum.valueOf((Class)type, name);
+	}
+
+	private static void writeString(DataOutputStream out, String val) throws IOException {
+		if(val==null) {
+			out.writeInt(-1);
+		} else {
+			byte[] bytes = val.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private static String readString(ByteBuffer in) {
+		int length = in.getInt();
+		if(length<0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -1,18 +1,52 @@
 package a.polverini.my;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
-import java.io.PrintStream;
-import java.nio.charset.Charset;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.Set;
 import java.util.TimeZone;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import a.polverini.my.DBS.AdditionalInformation;
 import a.polverini.my.DBS.Baseline;
@@ -29,25 +63,138 @@ import a.polverini.my.DBS.Requirement;
 import a.polverini.my.DBS.Scenario;
 import a.polverini.my.DBS.TestArea;
 import a.polverini.my.DBS.TestCase;
+import a.polverini.my.DBS.Table;
 import a.polverini.my.DBS.TestCaseProjectRequirement;
+import a.polverini.my.exceptions.InvalidKeyException;
+import a.polverini.my.exceptions.UnexpectedTypeException;
 
 public class XML {
 
 	public static boolean DEBUG = true;
 
+	/**
+	 * the compression of an exported file, detected by its extension
+	 */
+	public enum Compression {
+		NONE(""),
+		GZIP(".gz"),
+		DEFLATE(".zz");
+
+		private final String extension;
+
+		private Compression(String extension) {
+			this.extension = extension;
+		}
+
+		/**
+		 * @return the file extension, empty for none
+		 */
+		public String getExtension() {
+			return extension;
+		}
+
+		/**
+		 * @param path a file path
+		 * @return the compression matching the extension of the path, NONE if none matches
+		 */
+		public static Compression of(String path) {
+			for(Compression compression : values()) {
+				if(compression!=NONE && path.toLowerCase().endsWith(compression.extension)) {
+					return compression;
+				}
+			}
+			return NONE;
+		}
+
+		/**
+		 * @param stream the underlying stream
+		 * @param bufferSize the size of the compressor buffer
+		 * @return the stream compressing into the underlying one
+		 * @throws IOException
+		 */
+		public OutputStream output(OutputStream stream, int bufferSize) throws IOException {
+			switch(this) {
+			case GZIP:
+				return new GZIPOutputStream(stream, bufferSize);
+			case DEFLATE:
+				return new DeflaterOutputStream(stream, new Deflater(), bufferSize);
+			default:
+				return stream;
+			}
+		}
+
+		/**
+		 * @param stream the underlying stream
+		 * @param bufferSize the size of the decompressor buffer
+		 * @return the stream decompressing the underlying one
+		 * @throws IOException
+		 */
+		public InputStream input(InputStream stream, int bufferSize) throws IOException {
+			switch(this) {
+			case GZIP:
+				return new GZIPInputStream(stream, bufferSize);
+			case DEFLATE:
+				return new InflaterInputStream(stream, new Inflater(), bufferSize);
+			default:
+				return new BufferedInputStream(stream, bufferSize);
+			}
+		}
+	}
+
 	public static class Writer {
 
 		private static final String TAG = "XML.Writer";
-		private final PrintStream out;
+
+		/**
+		 * the default size of the output buffer
+		 */
+		public static final int BUFFER_SIZE = 1<<16;
+
+		private final java.io.Writer out;
 		private String[] INDENT = new String[16];
 
-		public Writer(String path) throws FileNotFoundException {
-			this(new FileOutputStream(new File(path)));
-			System.out.println(TAG+" path="+path);
+		public Writer(String path) throws IOException {
+			this(path, Compression.of(path), BUFFER_SIZE);
+		}
+
+		/**
+		 * @param path the output file
+		 * @param compression the compression of the output file
+		 * @param bufferSize the size of the output and of the compressor buffers
+		 * @throws IOException
+		 */
+		public Writer(String path, Compression compression, int bufferSize) throws IOException {
+			this(open(path, compression, bufferSize), bufferSize);
+			System.out.println(TAG+" path="+path+" compression="+compression);
+		}
+
+		private static OutputStream open(String path, Compression compression, int bufferSize) throws IOException {
+			OutputStream stream = new FileOutputStream(new File(path));
+			try {
+				return compression.output(stream, bufferSize);
+			} catch (IOException e) {
+				stream.close();
+				throw e;
+			}
 		}
 
 		public Writer(OutputStream stream) throws FileNotFoundException {
-			out = new PrintStream(stream);
+			this(stream, BUFFER_SIZE);
+		}
+
+		/**
+		 * @param stream the output stream, written in UTF-8
+		 * @param bufferSize the size of the output buffer
+		 */
+		public Writer(OutputStream stream, int bufferSize) {
+			this(new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), bufferSize));
+		}
+
+		/**
+		 * @param out the destination
+		 */
+		private Writer(java.io.Writer out) {
+			this.out = out;
 			String s = "";
 			for(int i=0;i<INDENT.length;i++) {
 				INDENT[i] = s;
@@ -55,7 +202,93 @@ public class XML {
 			}
 		}
 
-		public void close() {
+		/**
+		 * the executor rendering the projects concurrently, null to write them in sequence
+		 */
+		private Executor executor;
+
+		/**
+		 * the maximum number of parts rendered or waiting to be written at the same time
+		 */
+		private int maxInFlight;
+
+		/**
+		 * @param executor the executor rendering the projects concurrently, null to write them in sequence
+		 * @param maxInFlight the maximum number of parts rendered or buffered at the same time
+		 */
+		public void setExecutor(Executor executor, int maxInFlight) {
+			if(executor!=null && maxInFlight<1) {
+				throw new IllegalArgumentException("maxInFlight="+maxInFlight);
+			}
+			this.executor = executor;
+			this.maxInFlight = maxInFlight;
+		}
+
+		/**
+		 * a part of the document, written by the given writer
+		 */
+		private interface Part {
+			void write(Writer writer) throws IOException;
+		}
+
+		/**
+		 * write the parts in order; with an executor at most maxInFlight parts are rendered into their own buffers concurrently, 
+		 * and each buffer is written out as soon as it and the ones before it are complete;
+		 * the parts themselves write their content in sequence.
+		 * A part not started by the executor when its turn comes, because the executor is saturated, rejects it 
+		 * or is the one running this call, is rendered by the calling thread, which never waits for a queued task
+		 * @param parts the parts
+		 * @throws IOException
+		 */
+		private void write(List<Part> parts) throws IOException {
+			if(executor==null) {
+				for(Part part : parts) {
+					part.write(this);
+				}
+				return;
+			}
+			Deque<FutureTask<String>> tasks = new ArrayDeque<>();
+			Iterator<Part> iterator = parts.iterator();
+			try {
+				while(iterator.hasNext() || !tasks.isEmpty()) {
+					while(iterator.hasNext() && tasks.size()<maxInFlight) {
+						final Part part = iterator.next();
+						FutureTask<String> task = new FutureTask<>(() -> {
+							StringWriter buffer = new StringWriter();
+							part.write(new Writer(buffer));
+							return buffer.toString();
+						});
+						tasks.add(task);
+						try {
+							executor.execute(task);
+						} catch (RejectedExecutionException e) {
+							// rendered inline when its turn comes
+						}
+					}
+					FutureTask<String> next = tasks.poll();
+					// does nothing if the executor has started it already
+					next.run();
+					out.write(next.get());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			} catch (ExecutionException e) {
+				if(e.getCause() instanceof IOException) {
+					throw (IOException)e.getCause();
+				}
+				if(e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException)e.getCause();
+				}
+				throw new IOException(e.getCause());
+			} finally {
+				for(FutureTask<String> task : tasks) {
+					task.cancel(false);
+				}
+			}
+		}
+
+		public void close() throws IOException {
 			System.out.println(TAG+".close()");
 			out.close();
 		}
@@ -70,49 +303,142 @@ public class XML {
 		public static class EscapeUtil {
 
 			public static String escape(String s) {
-				return s.replaceAll("&", "&amp;")
-						.replaceAll(">", "&gt;")
-						.replaceAll("<", "&lt;")
-						.replaceAll("\"", "&quot;")
-						.replaceAll("'", "&apos;");
+				int i = 0;
+				while(i<s.length() && "&<>\"'".indexOf(s.charAt(i))<0) i++;
+				if(i==s.length()) return s;
+				StringBuilder sb = new StringBuilder(s.length()+16);
+				try {
+					escape(sb, s);
+				} catch (IOException e) {
+					throw new IllegalStateException(e);
+				}
+				return sb.toString();
+			}
+
+			/**
+			 * append the escaped string in a single pass, copying the runs without special characters at once
+			 * @param out the destination
+			 * @param s the string to escape
+			 * @throws IOException
+			 */
+			public static void escape(Appendable out, String s) throws IOException {
+				int start = 0;
+				for(int i=0; i<s.length(); i++) {
+					String entity;
+					switch(s.charAt(i)) {
+					case '&':
+						entity = "&amp;";
+						break;
+					case '>':
+						entity = "&gt;";
+						break;
+					case '<':
+						entity = "&lt;";
+						break;
+					case '"':
+						entity = "&quot;";
+						break;
+					case '\'':
+						entity = "&apos;";
+						break;
+					default:
+						continue;
+					}
+					out.append(s, start, i).append(entity);
+					start = i+1;
+				}
+				out.append(s, start, s.length());
 			}
 
 			public static String unescape(String s) {
-				return s.replaceAll("&apos;", 	"'")
-						.replaceAll("&quot;", 	"\"")
-						.replaceAll("&lt;",		"<")
-						.replaceAll("&gt;",		">")
-						.replaceAll("&amp;",	"&");
+				int amp = s.indexOf('&');
+				if(amp<0) return s;
+				StringBuilder sb = new StringBuilder(s.length());
+				int start = 0;
+				while(amp>=0) {
+					char c = 0;
+					int length = 0;
+					if(s.startsWith("&apos;", amp)) {
+						c = '\'';
+						length = 6;
+					} else if(s.startsWith("&quot;", amp)) {
+						c = '"';
+						length = 6;
+					} else if(s.startsWith("&lt;", amp)) {
+						c = '<';
+						length = 4;
+					} else if(s.startsWith("&gt;", amp)) {
+						c = '>';
+						length = 4;
+					} else if(s.startsWith("&amp;", amp)) {
+						c = '&';
+						length = 5;
+					}
+					if(length>0) {
+						sb.append(s, start, amp).append(c);
+						start = amp+length;
+					}
+					amp = s.indexOf('&', length>0 ? start : amp+1);
+				}
+				return sb.append(s, start, s.length()).toString();
+			}
+		}
+
+		/**
+		 * @param parts the text to write, one part after the other
+		 * @throws IOException
+		 */
+		private void print(CharSequence... parts) throws IOException {
+			for(CharSequence part : parts) {
+				out.append(part);
 			}
 		}
 
-		public void writeTag(String indent, String tag, String text) {
+		/**
+		 * @param sb the attributes
+		 * @param name the attribute name
+		 * @param val the attribute value
+		 */
+		private static void attribute(StringBuilder sb, String name, Object val) {
+			sb.append(' ').append(name).append("='").append(EscapeUtil.escape(String.valueOf(val))).append('\'');
+		}
+
+		public void writeTag(String indent, String tag, String text) throws IOException {
 			String t = text.trim();
 			if(t.isEmpty()) return;
-			out.printf("%s  <%s>\n",indent,tag);
+			print(indent, "  <", tag, ">\n");
 			for(String s : t.split("\n")) {
-				out.printf("%s  %s\n",indent,EscapeUtil.escape(s));
+				print(indent, "  ");
+				EscapeUtil.escape(out, s);
+				out.write('\n');
 			}
-			out.printf("%s  </%s>\n",indent,tag);
+			print(indent, "  </", tag, ">\n");
 		}
 
-		public void writeTestSpecification(Item specification) {
+		public void writeTestSpecification(Item specification) throws IOException {
 			System.out.println(TAG+".writeTestSpecification()");
 
 			String indent = INDENT[0];
 			String tag = "TestSpecification";
 
-			out.printf("%s<%s>\n",indent,tag);
-			writeBaselines(		(Item)specification.get("baselines"		));
-			writeDeployment(	(Item)specification.get("deployments"	));
-			writeAdditionalInformations(	(Item)specification.get("informations"	));
-			writePerformanceMeasurements(	(Item)specification.get("measurements"	));
-			writeRequirement(	(Item)specification.get("requirements"	));
-			writeProject(		(Item)specification.get("projects"		));
-			out.printf("%s</%s>\n",INDENT[0],tag);
+			print("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+			print(indent, "<", tag, ">\n");
+			// the sections in sequence: a section waiting for its projects would hold a thread of a bounded executor
+			List<Part> sections = Arrays.asList(
+					(Writer writer) -> writer.writeBaselines(				(Item)specification.get("baselines"		)),
+					(Writer writer) -> writer.writeDeployment(				(Item)specification.get("deployments"	)),
+					(Writer writer) -> writer.writeAdditionalInformations(	(Item)specification.get("informations"	)),
+					(Writer writer) -> writer.writePerformanceMeasurements(	(Item)specification.get("measurements"	)),
+					(Writer writer) -> writer.writeRequirement(				(Item)specification.get("requirements"	)),
+					(Writer writer) -> writer.writeProject(					(Item)specification.get("projects"		))
+			);
+			for(Part section : sections) {
+				section.write(this);
+			}
+			print(INDENT[0], "</", tag, ">\n");
 		}
 
-		private void writeBaselines(Item parent) {
+		private void writeBaselines(Item parent) throws IOException {
 			if(parent==null) return;
 
 			String indent = INDENT[1];
@@ -133,9 +459,9 @@ public class XML {
 			Map<String, Item> sorted = new TreeMap<String, Item>(unsorted);
 
 			// print
-			out.printf("%s<%s>\n",indent,tags);
+			print(indent, "<", tags, ">\n");
 			for(Entry<String, Item> entry : sorted.entrySet()) {
-				out.printf("%s  <%s pk='%s'>\n",indent,tag,entry.getKey());
+				print(indent, "  <", tag, " pk='", EscapeUtil.escape(String.valueOf(entry.getKey())), "'>\n");
 
 				Baseline baseline = (Baseline) entry.getValue();
 
@@ -143,13 +469,13 @@ public class XML {
 				if(description!=null) writeTag(indent+"  ", "description", description);
 
 				writeBaselineItems(baseline);
-				out.printf("%s  </%s>\n",indent,tag);
+				print(indent, "  </", tag, ">\n");
 			}
-			out.printf("%s</%s>\n",indent,tags);
+			print(indent, "</", tags, ">\n");
 
 		}
 
-		private void writeBaselineItems(Item parent) {
+		private void writeBaselineItems(Item parent) throws IOException {
 			if(parent==null) return;
 
 			String indent = INDENT[2];
@@ -170,7 +496,7 @@ public class XML {
 			Map<String, Item> sorted = new TreeMap<String, Item>(unsorted);
 
 			// print
-			out.printf("%s<%s>\n",indent,tags);
+			print(indent, "<", tags, ">\n");
 			for(Entry<String, Item> entry : sorted.entrySet()) {
 
 				BaselineItem baselineItem = (BaselineItem)entry.getValue();
@@ -178,18 +504,18 @@ public class XML {
 				StringBuilder sb = new StringBuilder();
 
 				String id = (String) baselineItem.get(BaselineItem.Field.ID);
-				if(id!=null) sb.append(String.format(" %s='%s'","id", id));
+				if(id!=null) attribute(sb, "id", id);
 
 				String version = (String) baselineItem.get(BaselineItem.Field.VERSION);
-				if(version!=null) sb.append(String.format(" %s='%s'","version", version));
+				if(version!=null) attribute(sb, "version", version);
 
-				out.printf("%s  <%s pk='%s'%s/>\n",indent,tag,entry.getKey(),sb.toString());
+				print(indent, "  <", tag, " pk='", EscapeUtil.escape(entry.getKey()), "'", sb, "/>\n");
 
 			}
-			out.printf("%s</%s>\n",indent,tags);
+			print(indent, "</", tags, ">\n");
 		}
 
-		private void writeDeployment(Item parent) {
+		private void writeDeployment(Item parent) throws IOException {
 			if(parent==null) return;
 
 			String indent = INDENT[1];
@@ -210,7 +536,7 @@ public class XML {
 			Map<String, Item> sorted = new TreeMap<String, Item>(unsorted);
 
 			// print
-			out.printf("%s<%s>\n",indent,tags);
+			print(indent, "<", tags, ">\n");
 			for(Entry<String, Item> entry : sorted.entrySet()) {
 
 				Deployment deployment = (Deployment)entry.getValue();
@@ -218,24 +544,24 @@ public class XML {
 				StringBuilder sb = new StringBuilder();
 
 				String name = (String) deployment.get(Deployment.Field.NAME);
-				if(name!=null) sb.append(String.format(" %s='%s'","name", name));
+				if(name!=null) attribute(sb, "name", name);
 
 				String measurementonly = (String) deployment.get(Deployment.Field.MEASUREMENT_ONLY);
-				if(measurementonly!=null) sb.append(String.format(" %s='%s'","measurementonly", measurementonly));
+				if(measurementonly!=null) attribute(sb, "measurementonly", measurementonly);
 
 				String description = (String)deployment.get(Deployment.Field.DESCRIPTION);
 				if(description==null) {
-					out.printf("%s  <%s pk='%s'%s/>\n",indent,tag,entry.getKey(),sb.toString());
+					print(indent, "  <", tag, " pk='", EscapeUtil.escape(entry.getKey()), "'", sb, "/>\n");
 				} else {
-					out.printf("%s  <%s pk='%s'%s>\n",indent,tag,entry.getKey(),sb.toString());
+					print(indent, "  <", tag, " pk='", EscapeUtil.escape(entry.getKey()), "'", sb, ">\n");
 					writeTag(indent+"  ", "description", description);
-					out.printf("%s  </%s>\n",indent,tag);
+					print(indent, "  </", tag, ">\n");
 				}
 			}
-			out.printf("%s</%s>\n",indent,tags);
+			print(indent, "</", tags, ">\n");
 		}
 
-		private void writeAdditionalInformations(Item parent) {
+		private void writeAdditionalInformations(Item parent) throws IOException {
 			if(parent==null) return;
 
 			String indent = INDENT[1];
@@ -256,24 +582,24 @@ public class XML {
 			Map<String, Item> sorted = new TreeMap<String, Item>(unsorted);
 
 			// print
-			out.printf("%s<%s>\n",indent,tags);
+			print(indent, "<", tags, ">\n");
 			for(Entry<String, Item> entry : sorted.entrySet()) {
 
 				AdditionalInformation additionalInformation = (AdditionalInformation)entry.getValue();
 
 				String description = (String)additionalInformation.get(AdditionalInformation.Field.DESCRIPTION);
 				if(description==null) {
-					out.printf("%s  <%s pk='%s'/>\n",indent,tag,entry.getKey());
+					print(indent, "  <", tag, " pk='", EscapeUtil.escape(String.valueOf(entry.getKey())), "'/>\n");
 				} else {
-					out.printf("%s  <%s pk='%s'>\n",indent,tag,entry.getKey());
+					print(indent, "  <", tag, " pk='", EscapeUtil.escape(String.valueOf(entry.getKey())), "'>\n");
 					writeTag(indent+"  ", "description", description);
-					out.printf("%s  </%s>\n",indent,tag);
+					print(indent, "  </", tag, ">\n");
 				}
 			}
-			out.printf("%s</%s>\n",indent,tags);
+			print(indent, "</", tags, ">\n");
 		}
 
-		private void writePerformanceMeasurements(Item parent) {
+		private void writePerformanceMeasurements(Item parent) throws IOException {
 			if(parent==null) return;
 
 			String indent = INDENT[1];
@@ -294,7 +620,7 @@ public class XML {
 			Map<String, Item> sorted = new TreeMap<String, Item>(unsorted);
 
 			// print
-			out.printf("%s<%s>\n",indent,tags);
+			print(indent, "<", tags, ">\n");
 			for(Entry<String, Item> entry : sorted.entrySet()) {
 
 				PerformanceMeasurement performanceMeasurement = (PerformanceMeasurement)entry.getValue();
@@ -302,28 +628,28 @@ public class XML {
 				StringBuilder sb = new StringBuilder();
 
 				String key = (String) performanceMeasurement.get(PerformanceMeasurement.Field.KEY);
-				if(key!=null) sb.append(String.format(" %s='%s'","key", key));
+				if(key!=null) attribute(sb, "key", key);
 
 				String basevalue = (String) performanceMeasurement.get(PerformanceMeasurement.Field.BASEVALUE);
-				if(basevalue!=null) sb.append(String.format(" %s='%s'","basevalue", basevalue));
+				if(basevalue!=null) attribute(sb, "basevalue", basevalue);
 
 				String targetvalue = (String) performanceMeasurement.get(PerformanceMeasurement.Field.TARGETVALUE);
-				if(targetvalue!=null) sb.append(String.format(" %s='%s'","targetvalue", targetvalue));
+				if(targetvalue!=null) attribute(sb, "targetvalue", targetvalue);
 
 				String description = (String)performanceMeasurement.get(PerformanceMeasurement.Field.DESCRIPTION);
 
 				if(description==null) {
-					out.printf("%s  <%s pk='%s'%s/>\n",indent,tag,entry.getKey(),sb.toString());
+					print(indent, "  <", tag, " pk='", EscapeUtil.escape(entry.getKey()), "'", sb, "/>\n");
 				} else {
-					out.printf("%s  <%s pk='%s'%s>\n",indent,tag,entry.getKey(),sb.toString());
+					print(indent, "  <", tag, " pk='", EscapeUtil.escape(entry.getKey()), "'", sb, ">\n");
 					writeTag(indent+"  ", "description", description);
-					out.printf("%s  </%s>\n",indent,tag);
+					print(indent, "  </", tag, ">\n");
 				}
 			}
-			out.printf("%s</%s>\n",indent,tags);
+			print(indent, "</", tags, ">\n");
 		}
 
-		private void writeRequirement(Item parent) {
+		private void writeRequirement(Item parent) throws IOException {
 			if(parent==null) return;
 
 			String indent = INDENT[1];
@@ -344,7 +670,7 @@ public class XML {
 			Map<String, Item> sorted = new TreeMap<String, Item>(unsorted);
 
 			// print
-			out.printf("%s<%s>\n",indent,tags);
+			print(indent, "<", tags, ">\n");
 			for(Entry<String, Item> entry : sorted.entrySet()) {
 
 				Requirement requirement = (Requirement) entry.getValue();
@@ -352,45 +678,45 @@ public class XML {
 				StringBuilder sb = new StringBuilder();
 
 				String id = (String) requirement.get(Requirement.Field.ID);
-				if(id!=null) sb.append(String.format(" %s='%s'","id", id));
+				if(id!=null) attribute(sb, "id", id);
 
 				String type = (String) requirement.get(Requirement.Field.TYPE);
-				if(type!=null) sb.append(String.format(" %s='%s'","type", type));
+				if(type!=null) attribute(sb, "type", type);
 
 				String name = (String) requirement.get(Requirement.Field.NAME);
-				if(name!=null) sb.append(String.format(" %s='%s'","name", name));
+				if(name!=null) attribute(sb, "name", name);
 
 				String verification = (String) requirement.get(Requirement.Field.VERIFICATION);
-				if(verification!=null)	sb.append(String.format(" %s='%s'","verification", verification));
+				if(verification!=null)	attribute(sb, "verification", verification);
 
 				String priority = (String) requirement.get(Requirement.Field.PRIORITY);
-				if(priority!=null) sb.append(String.format(" %s='%s'","priority", priority));
+				if(priority!=null) attribute(sb, "priority", priority);
 
 				String version = (String) requirement.get(Requirement.Field.VERSION);
-				if(version!=null) sb.append(String.format(" %s='%s'","version", version));
+				if(version!=null) attribute(sb, "version", version);
 
 				Timestamp timestamp = (Timestamp) requirement.get(Requirement.Field.IMPORT_DATE);
 				SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.0Z");
 				sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
-				String importdate = sdf.format(timestamp);
-				if(importdate!=null)	sb.append(String.format(" %s='%s'","importdate", name));
+				String importdate = timestamp==null ? null : sdf.format(timestamp);
+				if(importdate!=null)	attribute(sb, "importdate", name);
 
 				String importfile = (String) requirement.get(Requirement.Field.IMPORT_FILE);
-				if(importfile!=null) sb.append(String.format(" %s='%s'","importfile", importfile));
+				if(importfile!=null) attribute(sb, "importfile", importfile);
 
 				String description = (String) requirement.get(Requirement.Field.DESCRIPTION);
 				if(description==null) {
-					out.printf("%s  <%s pk='%s'%s/>\n",indent,tag,entry.getKey(),sb.toString());
+					print(indent, "  <", tag, " pk='", EscapeUtil.escape(entry.getKey()), "'", sb, "/>\n");
 				} else {
-					out.printf("%s  <%s pk='%s'%s>\n",indent,tag,entry.getKey(),sb.toString());
+					print(indent, "  <", tag, " pk='", EscapeUtil.escape(entry.getKey()), "'", sb, ">\n");
 					writeTag(indent+"  ", "description", description);
-					out.printf("%s  </%s>\n",indent,tag);
+					print(indent, "  </", tag, ">\n");
 				}
 			}
-			out.printf("%s</%s>\n",indent,tags);
+			print(indent, "</", tags, ">\n");
 		}
 
-		private void writeProject(Item parent) {
+		private void writeProject(Item parent) throws IOException {
 			if(parent==null) return;
 
 			String indent = INDENT[1];
@@ -411,48 +737,60 @@ public class XML {
 			Map<String, Item> sorted = new TreeMap<String, Item>(unsorted);
 
 			// print
-			out.printf("%s<%s>\n",indent,tags);
+			print(indent, "<", tags, ">\n");
+			List<Part> projects = new ArrayList<>();
 			for(Entry<String, Item> entry : sorted.entrySet()) {
+				projects.add((Writer writer) -> writer.writeProject(entry.getKey(), entry.getValue()));
+			}
+			write(projects);
+			print(indent, "</", tags, ">\n");
+		}
 
-				Item item = entry.getValue();
+		/**
+		 * @param pk the project key
+		 * @param item the project
+		 * @throws IOException
+		 */
+		private void writeProject(String pk, Item item) throws IOException {
 
-				StringBuilder sb = new StringBuilder();
+			String indent = INDENT[1];
+			String tag  = "Project";
 
-				String id = (String) item.get(Project.Field.ID);
-				if(id!=null) sb.append(String.format(" %s='%s'","id", id));
+			StringBuilder sb = new StringBuilder();
 
-				String type = (String) item.get(Project.Field.TYPE);
-				if(type!=null) sb.append(String.format(" %s='%s'","type", type));
+			String id = (String) item.get(Project.Field.ID);
+			if(id!=null) attribute(sb, "id", id);
 
-				String version = (String) item.get(Project.Field.VERSION);
-				if(version!=null) sb.append(String.format(" %s='%s'","version", version));
+			String type = (String) item.get(Project.Field.TYPE);
+			if(type!=null) attribute(sb, "type", type);
 
-				String artifact = (String) item.get(Project.Field.ARTIFACT);
-				if(artifact!=null) sb.append(String.format(" %s='%s'","artifact", artifact));
+			String version = (String) item.get(Project.Field.VERSION);
+			if(version!=null) attribute(sb, "version", version);
 
-				String pkg = (String) item.get(Project.Field.PACKAGE);
-				if(pkg!=null) sb.append(String.format(" %s='%s'","package", pkg));
+			String artifact = (String) item.get(Project.Field.ARTIFACT);
+			if(artifact!=null) attribute(sb, "artifact", artifact);
 
-				String basefolder = (String) item.get(Project.Field.BASEFOLDER);
-				if(basefolder!=null) sb.append(String.format(" %s='%s'","basefolder", basefolder));
+			String pkg = (String) item.get(Project.Field.PACKAGE);
+			if(pkg!=null) attribute(sb, "package", pkg);
 
-				String targetfolder = (String) item.get(Project.Field.TARGETFOLDER);
-				if(targetfolder!=null) sb.append(String.format(" %s='%s'","targetfolder", targetfolder));
+			String basefolder = (String) item.get(Project.Field.BASEFOLDER);
+			if(basefolder!=null) attribute(sb, "basefolder", basefolder);
 
-				if(!item.hasChildren()) {
-					out.printf("%s  <%s pk='%s'%s/>\n",indent,tag,entry.getKey(),sb.toString());
-				} else {
-					out.printf("%s  <%s pk='%s'%s>\n",indent,tag,entry.getKey(),sb.toString());
-					writeProjectRequirement(item);
-					writeTestArea(item);
-					writeScenario(item);
-					out.printf("%s  </%s>\n",indent,tag);
-				}
+			String targetfolder = (String) item.get(Project.Field.TARGETFOLDER);
+			if(targetfolder!=null) attribute(sb, "targetfolder", targetfolder);
+
+			if(!item.hasChildren()) {
+				print(indent, "  <", tag, " pk='", EscapeUtil.escape(pk), "'", sb, "/>\n");
+			} else {
+				print(indent, "  <", tag, " pk='", EscapeUtil.escape(pk), "'", sb, ">\n");
+				writeProjectRequirement(item);
+				writeTestArea(item);
+				writeScenario(item);
+				print(indent, "  </", tag, ">\n");
 			}
-			out.printf("%s</%s>\n",indent,tags);
 		}
 
-		private void writeProjectRequirement(Item parent) {
+		private void writeProjectRequirement(Item parent) throws IOException {
 			if(parent==null) return;
 
 			String indent = INDENT[2];
@@ -473,7 +811,7 @@ public class XML {
 			Map<String, Item> sorted = new TreeMap<String, Item>(unsorted);
 
 			// print
-			out.printf("%s<%s>\n",indent,tags);
+			print(indent, "<", tags, ">\n");
 			for(Entry<String, Item> entry : sorted.entrySet()) {
 
 				Item item = entry.getValue();
@@ -481,19 +819,19 @@ public class XML {
 				StringBuilder sb = new StringBuilder();
 
 				String id = (String) item.get(ProjectRequirement.Field.REQUIREMENT_ID);
-				if(id!=null) sb.append(String.format(" %s='%s'","id", id));
+				if(id!=null) attribute(sb, "id", id);
 
 				String status = (String) item.get(ProjectRequirement.Field.STATUS);
-				if(status!=null) sb.append(String.format(" %s='%s'","status", status));
+				if(status!=null) attribute(sb, "status", status);
 
 				String rfw = (String) item.get(ProjectRequirement.Field.RFW);
-				if(rfw!=null) sb.append(String.format(" %s='%s'","rfw", rfw));
+				if(rfw!=null) attribute(sb, "rfw", rfw);
 
 				String verificationstage = (String) item.get(ProjectRequirement.Field.VERIFICATIONSTAGE);
-				if(verificationstage!=null) sb.append(String.format(" %s='%s'","verificationstage", verificationstage));
+				if(verificationstage!=null) attribute(sb, "verificationstage", verificationstage);
 
 				String comment = (String) item.get(ProjectRequirement.Field.COMMENT);
-				if(comment!=null) sb.append(String.format(" %s='%s'","comment", comment));
+				if(comment!=null) attribute(sb, "comment", comment);
 
 				boolean hasDeployment = false;
 				for(Item child : parent.getChildren()) {
@@ -504,17 +842,17 @@ public class XML {
 				}
 
 				if(!hasDeployment) {
-					out.printf("%s  <%s pk='%s'%s/>\n",indent,tag,entry.getKey(),sb.toString());
+					print(indent, "  <", tag, " pk='", EscapeUtil.escape(entry.getKey()), "'", sb, "/>\n");
 				} else {
-					out.printf("%s  <%s pk='%s'%s>\n",indent,tag,entry.getKey(),sb.toString());
+					print(indent, "  <", tag, " pk='", EscapeUtil.escape(entry.getKey()), "'", sb, ">\n");
 					writeProjectRequirementDeployments(item);
-					out.printf("%s  </%s>\n",indent,tag);
+					print(indent, "  </", tag, ">\n");
 				}
 			}
-			out.printf("%s</%s>\n",indent,tags);
+			print(indent, "</", tags, ">\n");
 		}
 
-		private void writeProjectRequirementDeployments(Item parent) {
+		private void writeProjectRequirementDeployments(Item parent) throws IOException {
 			if(parent==null) return;
 
 			String indent = INDENT[3];
@@ -535,7 +873,7 @@ public class XML {
 			Map<String, Item> sorted = new TreeMap<String, Item>(unsorted);
 
 			// print
-			out.printf("%s<%s>\n",indent,tags);
+			print(indent, "<", tags, ">\n");
 			for(Entry<String, Item> entry : sorted.entrySet()) {
 
 				Item item = entry.getValue();
@@ -543,16 +881,16 @@ public class XML {
 				StringBuilder sb = new StringBuilder();
 
 				Deployment deployment = (Deployment) item.get(Deployment.TAG);
-				if(deployment!=null) sb.append(String.format(" %s='%s'","deployment", deployment.get(Deployment.Field.NAME)));
+				if(deployment!=null) attribute(sb, "deployment", deployment.get(Deployment.Field.NAME));
 
-				out.printf("%s  <%s pk='%s'%s/>\n",indent,tag,entry.getKey(),sb.toString());
+				print(indent, "  <", tag, " pk='", EscapeUtil.escape(entry.getKey()), "'", sb, "/>\n");
 			}
-			out.printf("%s</%s>\n",indent,tags);
+			print(indent, "</", tags, ">\n");
 
 
 		}
 
-		private void writeTestArea(Item parent) {
+		private void writeTestArea(Item parent) throws IOException {
 			if(parent==null) return;
 
 			String indent = INDENT[2];
@@ -573,7 +911,7 @@ public class XML {
 			Map<String, Item> sorted = new TreeMap<String, Item>(unsorted);
 
 			// print
-			out.printf("%s<%s>\n",indent,tags);
+			print(indent, "<", tags, ">\n");
 			for(Entry<String, Item> entry : sorted.entrySet()) {
 
 				Item item = entry.getValue();
@@ -581,12 +919,12 @@ public class XML {
 				StringBuilder sb = new StringBuilder();
 
 				String id = (String) item.get(TestArea.Field.ID);
-				if(id!=null) sb.append(String.format(" %s='%s'","id", id));
+				if(id!=null) attribute(sb, "id", id);
 
 				String title = (String) item.get(TestArea.Field.TITLE);
-				if(title!=null) sb.append(String.format(" %s='%s'","title", title));
+				if(title!=null) attribute(sb, "title", title);
 
-				out.printf("%s  <%s pk='%s'%s>\n",indent,tag,entry.getKey(),sb.toString());
+				print(indent, "  <", tag, " pk='", EscapeUtil.escape(entry.getKey()), "'", sb, ">\n");
 
 				String description = (String) item.get(TestArea.Field.DESCRIPTION);
 				if(description!=null) writeTag(indent+"  ", "description", description);
@@ -596,12 +934,12 @@ public class XML {
 
 				writeFeature(entry.getValue());
 
-				out.printf("%s  </%s>\n",indent,tag);
+				print(indent, "  </", tag, ">\n");
 			}
-			out.printf("%s</%s>\n",indent,tags);
+			print(indent, "</", tags, ">\n");
 		}
 
-		private void writeFeature(Item parent) {
+		private void writeFeature(Item parent) throws IOException {
 			if(parent==null) return;
 
 			String indent = INDENT[3];
@@ -622,7 +960,7 @@ public class XML {
 			Map<String, Item> sorted = new TreeMap<String, Item>(unsorted);
 
 			// print
-			out.printf("%s<%s>\n",indent,tags);
+			print(indent, "<", tags, ">\n");
 			for(Entry<String, Item> entry : sorted.entrySet()) {
 
 				Item item = entry.getValue();
@@ -630,24 +968,24 @@ public class XML {
 				StringBuilder sb = new StringBuilder();
 
 				String id = (String) item.get(Feature.Field.ID);
-				if(id!=null) sb.append(String.format(" %s='%s'","id", id));
+				if(id!=null) attribute(sb, "id", id);
 
 				String title = (String) item.get(Feature.Field.TITLE);
-				if(title!=null) sb.append(String.format(" %s='%s'","title", title));
+				if(title!=null) attribute(sb, "title", title);
 
-				out.printf("%s  <%s pk='%s'%s>\n",indent,tag,entry.getKey(),sb.toString());
+				print(indent, "  <", tag, " pk='", EscapeUtil.escape(entry.getKey()), "'", sb, ">\n");
 
 				String description = (String) item.get(Feature.Field.DESCRIPTION);
 				if(description!=null) writeTag(indent+"  ", "description", description);
 
 				writeTestCases(entry.getValue());
 
-				out.printf("%s  </%s>\n",indent,tag);
+				print(indent, "  </", tag, ">\n");
 			}
-			out.printf("%s</%s>\n",indent,tags);
+			print(indent, "</", tags, ">\n");
 		}
 
-		private void writeTestCases(Item parent) {
+		private void writeTestCases(Item parent) throws IOException {
 			if(parent==null) return;
 
 			String indent = INDENT[4];
@@ -668,7 +1006,7 @@ public class XML {
 			Map<String, Item> sorted = new TreeMap<String, Item>(unsorted);
 
 			// print
-			out.printf("%s<%s>\n",indent,tags);
+			print(indent, "<", tags, ">\n");
 			for(Entry<String, Item> entry : sorted.entrySet()) {
 
 				Item item = entry.getValue();
@@ -676,12 +1014,12 @@ public class XML {
 				StringBuilder sb = new StringBuilder();
 
 				String id = (String) item.get(TestCase.Field.ID);
-				if(id!=null) sb.append(String.format(" %s='%s'","id", id));
+				if(id!=null) attribute(sb, "id", id);
 
 				String title = (String) item.get(TestCase.Field.TITLE);
-				if(title!=null) sb.append(String.format(" %s='%s'","title", title));
+				if(title!=null) attribute(sb, "title", title);
 
-				out.printf("%s  <%s pk='%s'%s>\n",indent,tag,entry.getKey(),sb.toString());
+				print(indent, "  <", tag, " pk='", EscapeUtil.escape(entry.getKey()), "'", sb, ">\n");
 
 				String specification = (String) item.get(TestCase.Field.SPECIFICATION);
 				if(specification!=null) writeTag(indent+"  ", "specification", specification);
@@ -696,12 +1034,12 @@ public class XML {
 				if(comment!=null) writeTag(indent+"  ", "comment", comment);
 
 				writeTestCaseProjectRequirements(entry.getValue());
-				out.printf("%s  </%s>\n",indent,tag);
+				print(indent, "  </", tag, ">\n");
 			}
-			out.printf("%s</%s>\n",indent,tags);
+			print(indent, "</", tags, ">\n");
 		}
 
-		private void writeTestCaseProjectRequirements(Item parent) {
+		private void writeTestCaseProjectRequirements(Item parent) throws IOException {
 			if(parent==null) return;
 
 			String indent = INDENT[5];
@@ -725,14 +1063,14 @@ public class XML {
 			Map<String, Item> sorted = new TreeMap<String, Item>(unsorted);
 
 			// print
-			out.printf("%s<%s>\n",indent,tags);
+			print(indent, "<", tags, ">\n");
 			for(Entry<String, Item> entry : sorted.entrySet()) {
-				out.printf("%s  <%s pk='%s'/>\n",indent,tag,entry.getKey());
+				print(indent, "  <", tag, " pk='", EscapeUtil.escape(String.valueOf(entry.getKey())), "'/>\n");
 			}
-			out.printf("%s</%s>\n",indent,tags);
+			print(indent, "</", tags, ">\n");
 		}
 
-		private void writeScenario(Item parent) {
+		private void writeScenario(Item parent) throws IOException {
 			if(parent==null) return;
 
 			String indent = INDENT[2];
@@ -753,7 +1091,7 @@ public class XML {
 			Map<String, Item> sorted = new TreeMap<String, Item>(unsorted);
 
 			// print
-			out.printf("%s<%s>\n",indent,tags);
+			print(indent, "<", tags, ">\n");
 			for(Entry<String, Item> entry : sorted.entrySet()) {
 
 				Item item = entry.getValue();
@@ -761,15 +1099,15 @@ public class XML {
 				StringBuilder sb = new StringBuilder();
 
 				String type = (String) item.get(Scenario.Field.TYPE);
-				if(type!=null) sb.append(String.format(" %s='%s'","type", type));
+				if(type!=null) attribute(sb, "type", type);
 
 				String id = (String) item.get(Scenario.Field.ID);
-				if(id!=null) sb.append(String.format(" %s='%s'","id", id));
+				if(id!=null) attribute(sb, "id", id);
 
 				String title = (String) item.get(Scenario.Field.TITLE);
-				if(title!=null) sb.append(String.format(" %s='%s'","title", title));
+				if(title!=null) attribute(sb, "title", title);
 
-				out.printf("%s  <%s pk='%s'%s>\n",indent,tag,entry.getKey(),sb.toString());
+				print(indent, "  <", tag, " pk='", EscapeUtil.escape(entry.getKey()), "'", sb, ">\n");
 
 				String description = (String) item.get(Scenario.Field.DESCRIPTION);
 				if(description!=null) writeTag(indent+"  ", "description", description);
@@ -781,12 +1119,12 @@ public class XML {
 
 				writeProcedure(entry.getValue());
 
-				out.printf("%s  </%s>\n",indent,tag);
+				print(indent, "  </", tag, ">\n");
 			}
-			out.printf("%s</%s>\n",indent,tags);
+			print(indent, "</", tags, ">\n");
 		}
 
-		private void writeScenarioTestArea(Item parent) {
+		private void writeScenarioTestArea(Item parent) throws IOException {
 			if(parent==null) return;
 
 			String indent = INDENT[3];
@@ -795,10 +1133,10 @@ public class XML {
 			TestArea testarea = (TestArea)parent.get(TestArea.TAG);
 			if(testarea==null) return;
 
-			out.printf("%s  <%s pk='%s'/>\n",indent,tag,testarea.toString());
+			print(indent, "  <", tag, " pk='", EscapeUtil.escape(testarea.toString()), "'/>\n");
 		}
 
-		private void writeProcedure(Item parent) {
+		private void writeProcedure(Item parent) throws IOException {
 			if(parent==null) return;
 
 			String indent = INDENT[3];
@@ -819,7 +1157,7 @@ public class XML {
 			Map<String, Item> sorted = new TreeMap<String, Item>(unsorted);
 
 			// print
-			out.printf("%s<%s>\n",indent,tags);
+			print(indent, "<", tags, ">\n");
 			for(Entry<String, Item> entry : sorted.entrySet()) {
 
 				Item item = entry.getValue();
@@ -827,27 +1165,27 @@ public class XML {
 				StringBuilder sb = new StringBuilder();
 
 				String type = (String) item.get(Procedure.Field.TYPE);
-				if(type!=null) sb.append(String.format(" %s='%s'","type", type));
+				if(type!=null) attribute(sb, "type", type);
 
 				String id = (String) item.get(Procedure.Field.ID);
-				if(id!=null) sb.append(String.format(" %s='%s'","id", id));
+				if(id!=null) attribute(sb, "id", id);
 
 				String title = (String) item.get(Procedure.Field.TITLE);
-				if(title!=null) sb.append(String.format(" %s='%s'","title", title));
+				if(title!=null) attribute(sb, "title", title);
 
-				out.printf("%s  <%s pk='%s'%s>\n",indent,tag,entry.getKey(),sb.toString());
+				print(indent, "  <", tag, " pk='", EscapeUtil.escape(entry.getKey()), "'", sb, ">\n");
 
 				String description = (String) item.get(Procedure.Field.DESCRIPTION);
 				if(description!=null) writeTag(indent+"  ", "description", description);
 
 				writeProcedureTestCase(entry.getValue());
 
-				out.printf("%s  </%s>\n",indent,tag);
+				print(indent, "  </", tag, ">\n");
 			}
-			out.printf("%s</%s>\n",indent,tags);
+			print(indent, "</", tags, ">\n");
 		}
 
-		private void writeProcedureTestCase(Item parent) {
+		private void writeProcedureTestCase(Item parent) throws IOException {
 			if(parent==null) return;
 
 			String indent = INDENT[4];
@@ -871,13 +1209,426 @@ public class XML {
 			Map<String, Item> sorted = new TreeMap<String, Item>(unsorted);
 
 			// print
-			out.printf("%s<%s>\n",indent,tags);
+			print(indent, "<", tags, ">\n");
 			for(Entry<String, Item> entry : sorted.entrySet()) {
-				out.printf("%s  <%s pk='%s'/>\n",indent,tag,entry.getKey());
+				print(indent, "  <", tag, " pk='", EscapeUtil.escape(String.valueOf(entry.getKey())), "'/>\n");
 			}
-			out.printf("%s</%s>\n",indent,tags);
+			print(indent, "</", tags, ">\n");
 		}
 
 	}
 
+	/**
+	 * import an exported specification into a database, streaming the document with StAX;
+	 * the rows are inserted in batches, each table after the tables it depends on, and new keys are allocated
+	 * from the key sequences, to be created beforehand with {@link DBS#createSequences()}.
+	 * Only the exported keys of the referenced items are kept in memory
+	 */
+	public static class Reader {
+
+		private static final Logger LOGGER = Logger.getLogger(Reader.class.getName());
+
+		/**
+		 * the elements holding a text
+		 */
+		private static final Set<String> TEXTS = new HashSet<>(Arrays.asList("description", "approach", "specification", "scope", "criteria", "comment", "resources"));
+
+		/**
+		 * the table of each element
+		 */
+		private static final Map<String, Table> TABLES = new HashMap<>();
+
+		static {
+			TABLES.put("AdditionalInformation", 		Table.ADDITIONAL_INFORMATION);
+			TABLES.put("Baseline", 						Table.BASELINE);
+			TABLES.put("BaselineItem", 					Table.BASELINE_ITEM);
+			TABLES.put("Deployment", 					Table.DEPLOYMENT);
+			TABLES.put("PerformanceMeasurement", 		Table.PERFORMANCE_MEASUREMENT);
+			TABLES.put("Requirement", 					Table.REQUIREMENT);
+			TABLES.put("Project", 						Table.PROJECT);
+			TABLES.put("ProjectRequirement", 			Table.PROJECT_REQUIREMENT);
+			TABLES.put("ProjectRequirementDeployment", 	Table.PROJECT_REQUIREMENT_DEPLOYMENT);
+			TABLES.put("TestArea", 						Table.TESTAREA);
+			TABLES.put("Feature", 						Table.FEATURE);
+			TABLES.put("testcase", 						Table.TESTCASE);
+			TABLES.put("TestCaseProjectRequirement", 	Table.TESTCASE_PROJECT_REQUIREMENT);
+			TABLES.put("Scenario", 						Table.SCENARIO);
+			TABLES.put("procedure", 					Table.PROCEDURE);
+			TABLES.put("procedureTestCase", 			Table.PROCEDURE_TESTCASE);
+		}
+
+		/**
+		 * the attributes whose field has a different name
+		 */
+		private static final Map<String, String> ALIASES = new HashMap<>();
+
+		static {
+			ALIASES.put("importfile", 		"IMPORT_FILE");
+			ALIASES.put("measurementonly", 	"MEASUREMENT_ONLY");
+		}
+
+		/**
+		 * an open element
+		 */
+		private static class Frame {
+			final Table table;
+			final Properties row;
+			final Object pk;
+			boolean queued;
+			StringBuilder text;
+			Frame(Table table, Properties row, Object pk) {
+				this.table = table;
+				this.row = row;
+				this.pk = pk;
+			}
+		}
+
+		private final DBS dbs;
+		private final Deque<Frame> stack = new ArrayDeque<>();
+		private final Map<Table, List<Properties>> rows = new EnumMap<>(Table.class);
+		private final Map<Table, Map<String, Object>> references = new EnumMap<>(Table.class);
+		private final List<Object[]> deferred = new ArrayList<>();
+		private final Map<Object, String> testareas = new HashMap<>();
+		private long count;
+
+		/**
+		 * @param dbs the specification database to import into
+		 */
+		public Reader(DBS dbs) {
+			this.dbs = dbs;
+		}
+
+		/**
+		 * @param path the path of the exported specification
+		 * @return the number of rows inserted
+		 * @throws IOException
+		 * @throws XMLStreamException
+		 * @throws SQLException
+		 * @throws UnexpectedTypeException
+		 * @throws InvalidKeyException
+		 */
+		public long read(String path) throws IOException, XMLStreamException, SQLException, UnexpectedTypeException, InvalidKeyException {
+			Compression compression = Compression.of(path);
+			LOGGER.info("path="+path+" compression="+compression);
+			InputStream file = new FileInputStream(new File(path));
+			InputStream stream;
+			try {
+				stream = compression.input(file, Writer.BUFFER_SIZE);
+			} catch (IOException e) {
+				file.close();
+				throw e;
+			}
+			try {
+				return read(stream);
+			} finally {
+				stream.close();
+			}
+		}
+
+		/**
+		 * @param stream the exported specification
+		 * @return the number of rows inserted
+		 * @throws XMLStreamException
+		 * @throws SQLException
+		 * @throws UnexpectedTypeException
+		 * @throws InvalidKeyException
+		 */
+		public long read(InputStream stream) throws XMLStreamException, SQLException, UnexpectedTypeException, InvalidKeyException {
+			XMLInputFactory factory = XMLInputFactory.newInstance();
+			factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+			factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+			XMLStreamReader in = factory.createXMLStreamReader(stream);
+			try {
+				while(in.hasNext()) {
+					switch(in.next()) {
+					case XMLStreamConstants.START_ELEMENT:
+						start(in);
+						break;
+					case XMLStreamConstants.CHARACTERS:
+					case XMLStreamConstants.CDATA:
+						Frame frame = stack.peek();
+						if(frame!=null && frame.text!=null) {
+							frame.text.append(in.getText());
+						}
+						break;
+					case XMLStreamConstants.END_ELEMENT:
+						end(in.getLocalName());
+						break;
+					default:
+						break;
+					}
+				}
+			} finally {
+				in.close();
+			}
+			for(Object[] row : deferred) {
+				Object pk = reference((Table)row[2], (String)row[3]);
+				if(pk==null) {
+					LOGGER.warning("unresolved "+row[2]+" (pk="+row[3]+") of "+row[0]);
+					continue;
+				}
+				((Properties)row[1]).put(row[4], pk);
+				queue((Table)row[0], (Properties)row[1]);
+			}
+			deferred.clear();
+			for(Table table : dbs.order(Table.values())) {
+				flush(table);
+			}
+			link();
+			return count;
+		}
+
+		/**
+		 * set the test area of the scenarios, once every test area has been inserted
+		 * @throws SQLException
+		 * @throws UnexpectedTypeException
+		 * @throws InvalidKeyException
+		 */
+		private void link() throws SQLException, UnexpectedTypeException, InvalidKeyException {
+			if(testareas.isEmpty()) return;
+			String pk = Scenario.Field.PK.name();
+			String testarea = Scenario.Field.TESTAREA_PK.name();
+			Map<Object, String> fields = dbs.getKeys(Table.SCENARIO);
+			Map<String, String> keys = new HashMap<>();
+			keys.put(testarea, fields.get(Scenario.Field.TESTAREA_PK));
+			keys.put(pk, fields.get(Scenario.Field.PK));
+			List<Properties> data = new ArrayList<>();
+			for(Entry<Object, String> entry : testareas.entrySet()) {
+				Object testareaPK = reference(Table.TESTAREA, entry.getValue());
+				if(testareaPK==null) {
+					LOGGER.warning("unresolved "+Table.TESTAREA+" (pk="+entry.getValue()+") of "+Table.SCENARIO);
+					continue;
+				}
+				Properties row = new Properties();
+				row.put(pk, entry.getKey());
+				row.put(testarea, testareaPK);
+				data.add(row);
+			}
+			testareas.clear();
+			dbs.update(dbs.getTable(Table.SCENARIO), keys, data, pk);
+		}
+
+		private void start(XMLStreamReader in) throws SQLException, UnexpectedTypeException {
+			String name = in.getLocalName();
+			Frame parent = stack.peek();
+			if(TEXTS.contains(name)) {
+				Frame frame = new Frame(null, null, null);
+				frame.text = new StringBuilder();
+				stack.push(frame);
+				return;
+			}
+			if(name.equals("scenarioTestArea")) {
+				String exported = in.getAttributeValue(null, "pk");
+				Object pk = reference(Table.TESTAREA, exported);
+				if(pk!=null) {
+					parent.row.put(Scenario.Field.TESTAREA_PK, pk);
+				} else if(parent.pk!=null && exported!=null) {
+					// a test area of a project further on, set once the scenario has been inserted
+					testareas.put(parent.pk, exported);
+				}
+				stack.push(new Frame(null, null, null));
+				return;
+			}
+			if(parent!=null && parent.table!=null && !parent.queued) {
+				queue(parent.table, parent.row);
+				parent.queued = true;
+			}
+			Table table = TABLES.get(name);
+			if(table==null) {
+				// a list element, its items belong to the enclosing one
+				stack.push(new Frame(null, null, parent==null ? null : parent.pk));
+				return;
+			}
+
+			Properties row = new Properties();
+			Object pk = null;
+			Object primaryKey = dbs.getGeneratedKey(table);
+			if(primaryKey!=null) {
+				pk = next(table);
+				row.put(primaryKey, pk);
+			}
+			Object parentKey = dbs.getParentKey(table);
+			if(parentKey!=null && parent!=null && parent.pk!=null) {
+				row.put(parentKey, parent.pk);
+			}
+			for(int i=0; i<in.getAttributeCount(); i++) {
+				Object field = field(table, in.getAttributeLocalName(i));
+				if(field!=null) {
+					row.put(field, in.getAttributeValue(i));
+				}
+			}
+
+			String exported = in.getAttributeValue(null, "pk");
+			boolean deferred = false;
+			switch(table) {
+			case ADDITIONAL_INFORMATION:
+				row.put(AdditionalInformation.Field.KEY, exported);
+				break;
+			case BASELINE:
+				row.put(Baseline.Field.NAME, exported);
+				break;
+			case DEPLOYMENT:
+				register(Table.DEPLOYMENT, in.getAttributeValue(null, "name"), pk);
+				break;
+			case PROJECT:
+				register(Table.PROJECT, in.getAttributeValue(null, "id"), pk);
+				break;
+			case PROJECT_REQUIREMENT:
+				row.put(ProjectRequirement.Field.REQUIREMENT_ID, in.getAttributeValue(null, "id"));
+				register(Table.PROJECT_REQUIREMENT, exported, pk);
+				break;
+			case TESTAREA:
+				register(Table.TESTAREA, exported, pk);
+				break;
+			case TESTCASE:
+				register(Table.TESTCASE, exported, pk);
+				break;
+			case PERFORMANCE_MEASUREMENT:
+				String key = in.getAttributeValue(null, "key");
+				String project = exported!=null && key!=null && exported.endsWith("-"+key) ? exported.substring(0, exported.length()-key.length()-1) : exported;
+				deferred = defer(table, row, Table.PROJECT, project, PerformanceMeasurement.Field.PROJECT_PK);
+				break;
+			case PROJECT_REQUIREMENT_DEPLOYMENT:
+				deferred = defer(table, row, Table.DEPLOYMENT, in.getAttributeValue(null, "deployment"), ProjectRequirementDeployment.Field.DEPLOYMENTS_PK);
+				break;
+			case TESTCASE_PROJECT_REQUIREMENT:
+				deferred = defer(table, row, Table.PROJECT_REQUIREMENT, exported, TestCaseProjectRequirement.Field.REQUIREMENTS_PK);
+				break;
+			case PROCEDURE_TESTCASE:
+				deferred = defer(table, row, Table.TESTCASE, exported, ProcedureTestCase.Field.TESTCASES_PK);
+				break;
+			default:
+				break;
+			}
+			Frame frame = new Frame(table, row, pk);
+			frame.queued = deferred;
+			stack.push(frame);
+		}
+
+		private void end(String name) throws SQLException, UnexpectedTypeException {
+			Frame frame = stack.pop();
+			Frame parent = stack.peek();
+			if(frame.text!=null) {
+				if(parent!=null && parent.table!=null) {
+					Object field = field(parent.table, name);
+					if(field!=null) {
+						parent.row.put(field, text(frame.text.toString()));
+					}
+				}
+				return;
+			}
+			if(frame.table!=null && !frame.queued) {
+				queue(frame.table, frame.row);
+			}
+		}
+
+		/**
+		 * @param table the table
+		 * @param name an attribute or a text element
+		 * @return the corresponding field, null if none
+		 */
+		private Object field(Table table, String name) {
+			if(name.equals("pk")) {
+				return null;
+			}
+			Object primaryKey = dbs.getPrimaryKey(table);
+			if(!(primaryKey instanceof Enum)) {
+				return null;
+			}
+			String field = ALIASES.containsKey(name) ? ALIASES.get(name) : name.toUpperCase();
+			for(Object constant : ((Enum<?>)primaryKey).getDeclaringClass().getEnumConstants()) {
+				if(((Enum<?>)constant).name().equals(field)) {
+					return constant;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * @param text the content of a text element, one indented line per line of text
+		 * @return the text without the indentation
+		 */
+		private static String text(String text) {
+			String[] lines = text.split("\n", -1);
+			if(lines.length<3) {
+				return text.trim();
+			}
+			String indent = lines[lines.length-1];
+			StringBuilder sb = new StringBuilder();
+			for(int i=1; i<lines.length-1; i++) {
+				if(i>1) sb.append('\n');
+				sb.append(lines[i].startsWith(indent) ? lines[i].substring(indent.length()) : lines[i].trim());
+			}
+			return sb.toString();
+		}
+
+		/**
+		 * @param table the table
+		 * @return the next free key of the table
+		 * @throws SQLException
+		 */
+		private Long next(Table table) throws SQLException {
+			return dbs.nextKey(dbs.getTable(table));
+		}
+
+		private void register(Table table, String exported, Object pk) {
+			if(exported==null || pk==null) return;
+			Map<String, Object> map = references.get(table);
+			if(map==null) {
+				map = new HashMap<>();
+				references.put(table, map);
+			}
+			map.put(exported, pk);
+		}
+
+		private Object reference(Table table, String exported) {
+			Map<String, Object> map = references.get(table);
+			return map==null || exported==null ? null : map.get(exported);
+		}
+
+		/**
+		 * complete a row with the key of a referenced item, later if the item has not been read yet
+		 * @return true if the row is deferred to the end of the document
+		 */
+		private boolean defer(Table table, Properties row, Table referenced, String exported, Object field) {
+			Object pk = reference(referenced, exported);
+			if(pk!=null) {
+				row.put(field, pk);
+				return false;
+			}
+			deferred.add(new Object[] {table, row, referenced, exported, field});
+			return true;
+		}
+
+		/**
+		 * add a row to the pending ones, inserting them once a batch is complete
+		 */
+		private void queue(Table table, Properties row) throws SQLException, UnexpectedTypeException {
+			List<Properties> pending = rows.get(table);
+			if(pending==null) {
+				pending = new ArrayList<>();
+				rows.put(table, pending);
+			}
+			pending.add(row);
+			if(pending.size()>=dbs.getBatchSize()) {
+				flush(table);
+			}
+		}
+
+		/**
+		 * insert the pending rows of a table, after those of the tables it depends on
+		 */
+		private void flush(Table table) throws SQLException, UnexpectedTypeException {
+			for(Table dependency : dbs.getDependencies(table)) {
+				flush(dependency);
+			}
+			List<Properties> pending = rows.get(table);
+			if(pending==null || pending.isEmpty()) return;
+			dbs.insert(dbs.getTable(table), dbs.getKeys(table), pending);
+			count += pending.size();
+			LOGGER.fine(table+" "+pending.size());
+			pending.clear();
+		}
+	}
+
 }
@@ -6,8 +6,15 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
 
 import org.junit.After;
 import org.junit.AfterClass;
@@ -16,18 +23,17 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import a.polverini.my.DB.Type;
-import a.polverini.my.exceptions.AlreadyConnectedException;
-import a.polverini.my.exceptions.NotConnectedException;
+import a.polverini.my.exceptions.InvalidKeyException;
 import a.polverini.my.exceptions.UnexpectedTypeException;
 
 public class DBtest {
 
 	private DB db;
-	private String dbname 	= "test";
-	private String dbtable 	= "test";
+	private String dburl 	= "jdbc:h2:mem:dbtest;DB_CLOSE_DELAY=-1";
+	private String dbtable 	= "TEST";
 	private String dbuser 	= "sa";
 	private String dbpswd 	= "";
-	
+
 	@BeforeClass
 	public static void setUpBeforeClass() throws Exception {
 		System.out.println("DB test");
@@ -39,130 +45,242 @@ public class DBtest {
 
 	@Before
 	public void setUp() throws Exception {
-		db = new DB(dbname, dbuser, dbpswd) {
-
-			@Override
-			public String getURL() {
-				return String.format("jdbc:h2:file://c:/data/%s", getName());
-			}
-			
+		db = new DB(dburl, dbuser, dbpswd) {
 		};
 		assertNotNull(db);
+		Connection connection = db.getConnection();
+		try {
+			Statement statement = connection.createStatement();
+			statement.execute("DROP TABLE IF EXISTS "+dbtable);
+			statement.execute("DROP SEQUENCE IF EXISTS "+dbtable+"_pk_seq");
+			statement.execute("CREATE TABLE "+dbtable+" (PK INTEGER PRIMARY KEY, NAME VARCHAR(32))");
+			statement.execute("INSERT INTO "+dbtable+" (PK, NAME) VALUES (1, 'one')");
+			statement.close();
+		} finally {
+			db.release(connection);
+		}
 	}
 
 	@After
 	public void tearDown() throws Exception {
+		db.dispose();
 	}
 
-	@Test
-	public void testGetURL() {
-		assertEquals("url", "jdbc:h2:file://~/data/"+dbname, db.getURL() );
+	private static Map<Object, String> keys() {
+		Map<Object, String> keys = new LinkedHashMap<>();
+		keys.put("id", "PK");
+		keys.put("label", "NAME");
+		return keys;
+	}
+
+	private static Properties row(int pk, String name) {
+		Properties row = new Properties();
+		row.put("id", pk);
+		row.put("label", name);
+		return row;
 	}
 
 	@Test
-	public void testGetName() {
-		assertEquals("name", dbname, db.getURL() );
+	public void testGetURL() {
+		assertEquals("url", dburl, db.getURL() );
 	}
 
 	@Test
-	public void testDB() {
-		assertNotNull(db);
+	public void testGetDialect() {
+		assertEquals("dialect", DB.Dialect.H2, db.getDialect() );
 	}
 
 	@Test
-	public void testGetTypes() throws SQLException, NotConnectedException, UnexpectedTypeException {
+	public void testGetTypes() throws SQLException, UnexpectedTypeException {
 		Map<String, Type> types = db.getTypes(dbtable);
-		assertNotNull("types", types);
+		assertEquals("PK", Type.INTEGER, types.get("PK"));
+		assertEquals("NAME", Type.STRING, types.get("NAME"));
 	}
 
 	@Test
 	public void testIsConnected() throws SQLException {
+		assertTrue("connected", db.isConnected());
+		db.dispose();
 		assertFalse("not-connected", db.isConnected());
 	}
 
 	@Test
-	public void testConnect() throws SQLException, AlreadyConnectedException {
-		assertFalse("precondition not-connected", db.isConnected());
-		db.connect();
-		assertTrue("connected", db.isConnected());
+	public void testCount() throws SQLException {
+		int count = db.count(dbtable);
+		assertEquals("count", 1, count);
 	}
 
-	@Test (expected = AlreadyConnectedException.class)
-	public void testAlreadyConnected() throws SQLException, AlreadyConnectedException, NotConnectedException {
-		assertFalse("precondition not-connected", db.isConnected());
-		db.connect();
-		assertTrue("connected", db.isConnected());
-		db.connect();
+	@Test
+	@SuppressWarnings("deprecation")
+	public void testPk() throws SQLException {
+		int pk = db.pk(dbtable);
+		assertEquals("pk", 2, pk);
 	}
-	
+
 	@Test
-	public void testDisconnect() throws SQLException, AlreadyConnectedException, NotConnectedException {
-		assertFalse("precondition not-connected", db.isConnected());
-		db.connect();
-		assertTrue("connected", db.isConnected());
-		db.disconnect();
-		assertFalse("not-connected", db.isConnected());
+	public void testNextKey() throws SQLException {
+		DB other = new DB(dburl, dbuser, dbpswd) {
+		};
+		try {
+			assertEquals(dbtable+"_pk_seq", db.createSequence(dbtable));
+			other.createSequence(dbtable);
+			db.setKeyBlock(3);
+			other.setKeyBlock(3);
+			TreeSet<Long> keys = new TreeSet<>();
+			for(int i=0; i<10; i++) {
+				assertTrue("unique", keys.add(db.nextKey(dbtable)));
+				assertTrue("unique", keys.add(other.nextKey(dbtable)));
+			}
+			assertEquals("above max(pk)", 2L, (long)keys.first());
+		} finally {
+			other.dispose();
+		}
 	}
-	
-	@Test (expected = NotConnectedException.class)
-	public void testNotConnectedException() throws SQLException, AlreadyConnectedException, NotConnectedException {
-		assertFalse("precondition not-connected", db.isConnected());
-		db.connect();
-		assertTrue("connected", db.isConnected());
-		db.disconnect();
-		assertFalse("not-connected", db.isConnected());
-		db.disconnect();
+
+	@Test(expected = SQLException.class)
+	public void testNoSequence() throws SQLException {
+		db.nextKey(dbtable);
 	}
 
 	@Test
-	public void testCount() throws SQLException, AlreadyConnectedException, NotConnectedException {
-		assertFalse("precondition not-connected", db.isConnected());
-		db.connect();
-		assertTrue("connected", db.isConnected());
-		
-		int count = db.count(dbtable);
-		assertEquals("count", 1, count);
-		
-		db.disconnect();
-		assertFalse("not-connected", db.isConnected());
+	public void testHash() {
+		Properties empty = new Properties();
+		assertEquals("offset basis", 0xcbf29ce484222325L, DB.hash(empty));
+		Properties a = new Properties();
+		a.put("id", 1);
+		a.put("label", "one");
+		Properties b = new Properties();
+		b.put("label", "one");
+		b.put("id", 1L);
+		assertEquals("order and integral type", DB.hash(a), DB.hash(b));
+		Properties c = new Properties();
+		c.put("flag", Boolean.TRUE);
+		Properties d = new Properties();
+		d.put("flag", "TRUE");
+		assertEquals("boolean", DB.hash(c), DB.hash(d));
+		b.put("label", "One");
+		assertTrue("value", DB.hash(a)!=DB.hash(b));
+		Properties e = new Properties();
+		e.put("ab", "c");
+		Properties f = new Properties();
+		f.put("a", "bc");
+		assertTrue("key boundary", DB.hash(e)!=DB.hash(f));
 	}
 
-	@Test
-	public void testPk() throws SQLException, AlreadyConnectedException, NotConnectedException {
-		assertFalse("precondition not-connected", db.isConnected());
-		db.connect();
-		assertTrue("connected", db.isConnected());
-		
-		int pk = db.pk(dbtable);
-		assertEquals("pk", 2, pk);
-		
-		db.disconnect();
-		assertFalse("not-connected", db.isConnected());
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoBatchSize() {
+		db.setBatchSize(0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoBatchesPerCommit() {
+		db.setBatchesPerCommit(0);
 	}
 
 	@Test
-	public void testTruncate() throws SQLException, AlreadyConnectedException, NotConnectedException {
-		assertFalse("precondition not-connected", db.isConnected());
-		db.connect();
-		assertTrue("connected", db.isConnected());
+	public void testTruncate() throws SQLException {
 		db.truncate(dbtable);
-		db.disconnect();
-		assertFalse("not-connected", db.isConnected());
+		assertEquals("count", 0, db.count(dbtable));
 	}
 
 	@Test
-	public void testQuery() {
-		fail("Not yet implemented");
+	public void testTruncateAll() throws SQLException {
+		try {
+			db.truncate(Arrays.asList(dbtable, "NO_SUCH_TABLE"));
+			fail("missing table");
+		} catch (SQLException e) {
+		}
+		assertEquals("rolled back", 1, db.count(dbtable));
+		db.truncate(Arrays.asList(dbtable));
+		assertEquals("count", 0, db.count(dbtable));
 	}
 
 	@Test
-	public void testInsert() {
-		fail("Not yet implemented");
+	public void testQuery() throws SQLException {
+		List<Properties> rows = db.query(dbtable, keys());
+		assertEquals("rows", 1, rows.size());
+		assertEquals("pk", 1, ((Number)rows.get(0).get("id")).intValue());
+		assertEquals("name", "one", rows.get(0).get("label"));
 	}
 
 	@Test
-	public void testUpdate() {
-		fail("Not yet implemented");
+	public void testInsert() throws SQLException, UnexpectedTypeException {
+		db.insert(dbtable, keys(), Arrays.asList(row(2, "two"), row(3, "three")));
+		assertEquals("count", 3, db.count(dbtable));
+	}
+
+	@Test
+	public void testCachedCount() throws SQLException, UnexpectedTypeException {
+		assertEquals("count", 1, db.count(dbtable, DB.Count.CACHED));
+		db.insert(dbtable, keys(), Arrays.asList(row(2, "two")));
+		assertEquals("invalidated by the insert", 2, db.count(dbtable, DB.Count.CACHED));
+		Connection connection = db.getConnection();
+		try {
+			Statement statement = connection.createStatement();
+			statement.execute("DELETE FROM "+dbtable+" WHERE PK = 2");
+			statement.close();
+		} finally {
+			db.release(connection);
+		}
+		assertEquals("written by someone else", 2, db.count(dbtable, DB.Count.CACHED));
+		db.invalidateCounts();
+		assertEquals("invalidated", 1, db.count(dbtable, DB.Count.CACHED));
+	}
+
+	@Test
+	public void testUpdate() throws SQLException, UnexpectedTypeException, InvalidKeyException {
+		Map<String, String> keys = new LinkedHashMap<>();
+		keys.put("id", "PK");
+		keys.put("label", "NAME");
+		db.insert(dbtable, keys(), Arrays.asList(row(2, "two")));
+		db.update(dbtable, keys, Arrays.asList(row(1, "uno")), "id");
+		Map<Object, String> k = keys();
+		List<Properties> rows = db.query(dbtable, k, new Filter().orderBy("id", true));
+		assertEquals("updated", "uno", rows.get(0).get("label"));
+		assertEquals("untouched", "two", rows.get(1).get("label"));
+	}
+
+	@Test
+	public void testUpdateBatches() throws SQLException, UnexpectedTypeException, InvalidKeyException {
+		Map<String, String> keys = new LinkedHashMap<>();
+		keys.put("id", "PK");
+		keys.put("label", "NAME");
+		db.setBatchSize(1);
+		List<int[]> counts = db.updateBatches(dbtable, keys, Arrays.asList(row(1, "uno"), row(9, "nove")), "id");
+		assertEquals("batches", 2, counts.size());
+		assertEquals("updated", 1, counts.get(0)[0]);
+		assertEquals("missing", 0, counts.get(1)[0]);
+	}
+
+	@Test
+	public void testInsertRollback() throws SQLException, UnexpectedTypeException {
+		db.setBatchSize(1);
+		db.setBatchesPerCommit(2);
+		Properties bad = row(0, "bad");
+		bad.put("id", "not a number");
+		try {
+			db.insert(dbtable, keys(), Arrays.asList(row(2, "two"), bad));
+			fail("binder error");
+		} catch (NumberFormatException e) {
+		}
+		assertEquals("rolled back", 1, db.count(dbtable));
+	}
+
+	@Test
+	public void testUpsert() throws SQLException, UnexpectedTypeException, InvalidKeyException {
+		db.upsert(dbtable, keys(), Arrays.asList(row(1, "uno"), row(2, "due")), "id");
+		db.upsert(dbtable, keys(), Arrays.asList(row(2, "two")), "id");
+		List<Properties> rows = db.query(dbtable, keys(), new Filter().orderBy("id", true));
+		assertEquals("rows", 2, rows.size());
+		assertEquals("updated", "uno", rows.get(0).get("label"));
+		assertEquals("inserted then updated", "two", rows.get(1).get("label"));
+	}
+
+	@Test (expected = InvalidKeyException.class)
+	public void testUpdateInvalidKey() throws SQLException, UnexpectedTypeException, InvalidKeyException {
+		Map<String, String> keys = new LinkedHashMap<>();
+		keys.put("label", "NAME");
+		db.update(dbtable, keys, Arrays.asList(row(1, "uno")), "id");
 	}
 
 }
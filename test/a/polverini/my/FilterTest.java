@@ -0,0 +1,96 @@
+/**
+ * Unit Test
+ */
+package a.polverini.my;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import a.polverini.my.exceptions.InvalidKeyException;
+
+/**
+ * Test the Filter class
+ */
+public class FilterTest {
+
+	private static Map<Object, String> keys() {
+		Map<Object, String> keys = new LinkedHashMap<>();
+		keys.put("id", "PK");
+		keys.put("label", "NAME");
+		keys.put("date", "IMPORTDATE");
+		return keys;
+	}
+
+	@Test
+	public void testEmpty() throws InvalidKeyException {
+		List<Object> params = new ArrayList<>();
+		assertEquals("", new Filter().toSQL(keys(), params));
+		assertTrue(params.isEmpty());
+	}
+
+	@Test
+	public void testConditions() throws InvalidKeyException {
+		List<Object> params = new ArrayList<>();
+		Filter filter = new Filter().eq("label", "one").eq("date", null).range("id", 10, 20).after("id", 12);
+		assertEquals(" WHERE NAME = ? AND IMPORTDATE IS NULL AND PK >= ? AND PK < ? AND PK > ?", filter.toSQL(keys(), params));
+		assertEquals(Arrays.asList("one", 10, 20, 12), params);
+	}
+
+	@Test
+	public void testUnbounded() throws InvalidKeyException {
+		List<Object> params = new ArrayList<>();
+		assertEquals(" WHERE PK < ?", new Filter().range("id", null, 5).after("id", null).toSQL(keys(), params));
+		assertEquals(Arrays.<Object>asList(5), params);
+	}
+
+	@Test
+	public void testUpTo() throws InvalidKeyException {
+		List<Object> params = new ArrayList<>();
+		assertEquals(" WHERE PK > ? AND PK <= ?", new Filter().after("id", 10).upTo("id", 20).upTo("id", null).toSQL(keys(), params));
+		assertEquals(Arrays.<Object>asList(10, 20), params);
+	}
+
+	@Test
+	public void testIn() throws InvalidKeyException {
+		List<Object> params = new ArrayList<>();
+		assertEquals(" WHERE PK IN (?, ?, ?)", new Filter().in("id", 1, 2, 3).toSQL(keys(), params));
+		assertEquals(Arrays.<Object>asList(1, 2, 3), params);
+	}
+
+	@Test
+	public void testInNone() throws InvalidKeyException {
+		List<Object> params = new ArrayList<>();
+		assertEquals(" WHERE 1=0 AND NAME = ?", new Filter().in("id", Collections.emptyList()).eq("label", "one").toSQL(keys(), params));
+		assertEquals(Arrays.<Object>asList("one"), params);
+	}
+
+	@Test
+	public void testOrderBy() throws InvalidKeyException {
+		List<Object> params = new ArrayList<>();
+		Filter filter = new Filter().eq("label", "one").orderBy("date", false).orderBy("id", true);
+		assertEquals(" WHERE NAME = ? ORDER BY IMPORTDATE DESC, PK ASC", filter.toSQL(keys(), params));
+		params.clear();
+		assertEquals("conditions only", " WHERE NAME = ?", new Filter(filter).toSQL(keys(), params));
+		assertEquals(Arrays.<Object>asList("one"), params);
+	}
+
+	@Test(expected = InvalidKeyException.class)
+	public void testInvalidKey() throws InvalidKeyException {
+		new Filter().eq("missing", 1).toSQL(keys(), new ArrayList<>());
+	}
+
+	@Test(expected = InvalidKeyException.class)
+	public void testInvalidOrder() throws InvalidKeyException {
+		new Filter().orderBy("missing", true).toSQL(keys(), new ArrayList<>());
+	}
+
+}
@@ -3,14 +3,21 @@
  */
 package a.polverini.my;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
 
 import org.junit.After;
 import org.junit.AfterClass;
@@ -18,20 +25,43 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
-import a.polverini.my.exceptions.AlreadyConnectedException;
-import a.polverini.my.exceptions.NotConnectedException;
-
 /**
  * @author A.Polverini
  */
 public class H2STest {
 
-	private String dbname = "test";
+	private static String dburl = "jdbc:h2:mem:h2stest;DB_CLOSE_DELAY=-1";
 	private H2S h2s;
-	
+
+	/**
+	 * create the specification tables in an empty H2 database, with the columns of the table keys
+	 * @param url the database URL
+	 * @throws SQLException
+	 */
+	static void create(String url) throws SQLException {
+		H2S h2s = new H2S(url);
+		Connection connection = h2s.getConnection();
+		try {
+			Statement statement = connection.createStatement();
+			for(DBS.Table table : DBS.Table.values()) {
+				StringBuilder sb = new StringBuilder();
+				for(String field : new TreeSet<>(h2s.getKeys(table).values())) {
+					sb.append(sb.length()==0 ? "" : ", ").append(field);
+					sb.append(field.endsWith("PK") ? " BIGINT" : field.equals("IMPORTDATE") ? " TIMESTAMP" : " VARCHAR");
+				}
+				statement.execute(String.format("CREATE TABLE IF NOT EXISTS %s (%s)", h2s.getTable(table), sb));
+			}
+			statement.close();
+		} finally {
+			h2s.release(connection);
+			h2s.dispose();
+		}
+	}
+
 	@BeforeClass
 	public static void setUpBeforeClass() throws Exception {
 		System.out.println("H2S test");
+		create(dburl);
 	}
 
 	@AfterClass
@@ -40,46 +70,117 @@ public class H2STest {
 
 	@Before
 	public void setUp() throws Exception {
-		h2s = new H2S(dbname);
+		h2s = new H2S(dburl);
 		assertNotNull("precondition constructor", h2s);
-		assertFalse("precondition not-connected", h2s.isConnected());
-		h2s.connect();
 		assertTrue("precondition connected", h2s.isConnected());
 	}
 
 	@After
 	public void tearDown() throws Exception {
 		assertTrue("postcondition connected", h2s.isConnected());
-		h2s.disconnect();
+		h2s.dispose();
 		assertFalse("postcondition not-connected", h2s.isConnected());
 		h2s = null;
 	}
 
 	@Test
-	public void testQuery() throws SQLException, AlreadyConnectedException, NotConnectedException {
-		
+	public void testParallelism() {
+		h2s.setParallelism(2);
+		assertEquals(2, h2s.getParallelism());
+		h2s.setParallelism(100);
+		assertEquals("a connection left for the linking", Pool.Bounded.DEFAULT_SIZE-1, h2s.getParallelism());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoParallelism() {
+		h2s.setParallelism(0);
+	}
+
+	@Test
+	public void testParallelQuery() throws Exception {
+		H2S sequential = new H2S(dburl);
+		int sections = sequential.query().size();
+		sequential.dispose();
+		h2s.setParallelism(Pool.Bounded.DEFAULT_SIZE);
+		assertEquals(sections, h2s.query().size());
+	}
+
+	/**
+	 * @param sql the statement to execute
+	 * @throws SQLException
+	 */
+	private void execute(String sql) throws SQLException {
+		Connection connection = h2s.getConnection();
+		try {
+			Statement statement = connection.createStatement();
+			statement.execute(sql);
+			statement.close();
+		} finally {
+			h2s.release(connection);
+		}
+	}
+
+	@Test
+	public void testRefresh() throws Exception {
+		String table = h2s.getTable(DBS.Table.PROJECT);
+		String pk = h2s.getKeys(DBS.Table.PROJECT).get(h2s.getPrimaryKey(DBS.Table.PROJECT));
+		for(boolean tracking : new boolean[] { true, false }) {
+			H2S dbs = new H2S(dburl);
+			dbs.setTracking(tracking);
+			dbs.query();
+			if(!tracking) {
+				assertTrue("first refresh takes the baseline", dbs.refresh().isEmpty());
+			}
+			execute(String.format("INSERT INTO %s (%s) VALUES (1000)", table, pk));
+			try {
+				assertTrue(dbs.refresh().contains(DBS.Table.PROJECT));
+				assertTrue(dbs.refresh().isEmpty());
+			} finally {
+				execute(String.format("DELETE FROM %s WHERE %s=1000", table, pk));
+				dbs.dispose();
+			}
+		}
+	}
+
+	@Test
+	public void testCorruptedSnapshot() throws Exception {
+		File file = File.createTempFile("h2stest", ".snap");
+		try {
+			Files.write(file.toPath(), new byte[] { 0x4D, 0x59, 0x44 });
+			int sections = h2s.query(new Snapshot(file)).size();
+			H2S restored = new H2S(dburl);
+			try {
+				assertEquals("rewritten", sections, restored.query(new Snapshot(file)).size());
+			} finally {
+				restored.dispose();
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testQuery() throws Exception {
+
 		Map<String, Item> egsccSpecification = new HashMap<>();
-		
+
 		List<Item> results = h2s.query();
+		Item specification = new Item();
 		for(Item result : results) {
 			egsccSpecification.put(result.getTag(), result);
+			specification.set(result.getTag().equals("information") ? "informations" : result.getTag(), result);
 		}
-				
+
 		assertTrue(egsccSpecification.containsKey("baselines"	 ));
-		assertTrue(egsccSpecification.containsKey("information"	 ));
 		assertTrue(egsccSpecification.containsKey("deployments"	 ));
-		assertTrue(egsccSpecification.containsKey("locks"		 ));
 		assertTrue(egsccSpecification.containsKey("requirements" ));
 		assertTrue(egsccSpecification.containsKey("projects"	 ));
-		
-		try {
-			XML.Writer writer = new XML.Writer("c:/tmp/h2s.xml");
-			writer.writeSpecification(egsccSpecification);
-			writer.close();
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
 
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		XML.Writer writer = new XML.Writer(stream);
+		writer.writeTestSpecification(specification);
+		writer.close();
+		assertTrue(stream.size()>0);
 	}
 
 }
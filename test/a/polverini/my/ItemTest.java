@@ -0,0 +1,91 @@
+/**
+ * Unit Test
+ */
+package a.polverini.my;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Properties;
+
+import org.junit.Test;
+
+/**
+ * Test the Item class
+ */
+public class ItemTest {
+
+	private enum Field {
+		PK, NAME, DESCRIPTION
+	}
+
+	private enum Other {
+		PK
+	}
+
+	@Test
+	public void testFields() {
+		Item item = new Item();
+		assertNull(item.get(Field.PK));
+		item.set(Field.PK, 1L);
+		item.set(Field.NAME, "one");
+		assertEquals(1L, item.get(Field.PK));
+		assertEquals("one", item.get(Field.NAME));
+		assertNull(item.get(Field.DESCRIPTION));
+		item.set(Field.NAME, "uno");
+		assertEquals("uno", item.get(Field.NAME));
+		item.set(Field.NAME, null);
+		assertNull(item.get(Field.NAME));
+	}
+
+	@Test
+	public void testOtherKeys() {
+		Item item = new Item();
+		item.set(Field.PK, 1L);
+		item.set(Other.PK, 2L);
+		item.set("tag", "three");
+		assertEquals("enum of the fields", 1L, item.get(Field.PK));
+		assertEquals("enum of another type", 2L, item.get(Other.PK));
+		assertEquals("string", "three", item.get("tag"));
+		item.set("tag", "tre");
+		assertEquals("replaced", "tre", item.get("tag"));
+		assertNull(item.get("missing"));
+	}
+
+	@Test
+	public void testGetProperties() {
+		Item item = new Item();
+		item.set(Field.PK, 1L);
+		item.set(Field.DESCRIPTION, null);
+		item.set("tag", "three");
+		item.set("none", null);
+		Properties properties = item.getProperties();
+		assertEquals(2, properties.size());
+		assertEquals(1L, properties.get(Field.PK));
+		assertEquals("three", properties.get("tag"));
+		properties.put(Field.NAME, "copy");
+		assertNull("copy", item.get(Field.NAME));
+	}
+
+	@Test
+	public void testChildren() {
+		Item root = new Item();
+		assertFalse(root.hasChildren());
+		assertTrue(root.getChildren().isEmpty());
+		Item first = new Item(root, "first");
+		Item second = new Item(root, "second");
+		assertTrue(root.hasChildren());
+		assertEquals(2, root.getChildren().size());
+		assertSame(first, root.getChildren().get(0));
+		assertSame(second, root.getChildren().get(1));
+		assertSame(root, first.getParent());
+		assertEquals("first", first.getTag());
+		root.remove(child -> child.getTag().equals("first"));
+		assertEquals(1, root.getChildren().size());
+		assertSame(second, root.getChildren().get(0));
+	}
+
+}
@@ -14,19 +14,17 @@ import java.util.Map;
 
 import org.junit.After;
 import org.junit.AfterClass;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
-import a.polverini.my.exceptions.AlreadyConnectedException;
-import a.polverini.my.exceptions.NotConnectedException;
-
 /**
  * @author A.Polverini
  */
 public class PGRtest {
 
-	private String dbname = "egscc-results";
+	private String dburl = "jdbc:postgresql://localhost:5432/egscc-results";
 
 	private PGR pgr;
 
@@ -41,23 +39,27 @@ public class PGRtest {
 
 	@Before
 	public void setUp() throws Exception {
-		pgr = new PGR(dbname);
+		try {
+			pgr = new PGR(dburl);
+		} catch (SQLException e) {
+			// no local server
+			Assume.assumeNoException(e);
+		}
 		assertNotNull("precondition constructor", pgr);
-		assertFalse("precondition not-connected", pgr.isConnected());
-		pgr.connect();
 		assertTrue("precondition connected", pgr.isConnected());
 	}
 
 	@After
 	public void tearDown() throws Exception {
+		if(pgr==null) return;
 		assertTrue("postcondition connected", pgr.isConnected());
-		pgr.disconnect();
+		pgr.dispose();
 		assertFalse("postcondition not-connected", pgr.isConnected());
 		pgr = null;
 	}
 
 	@Test
-	public void testQuery() throws SQLException, AlreadyConnectedException, NotConnectedException {
+	public void testQuery() throws SQLException {
 		
 		Map<String, Item> egsccResults = new HashMap<>();
 		
@@ -7,6 +7,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.List;
@@ -14,20 +15,18 @@ import java.util.Map;
 
 import org.junit.After;
 import org.junit.AfterClass;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
-import a.polverini.my.exceptions.AlreadyConnectedException;
-import a.polverini.my.exceptions.NotConnectedException;
-
 /**
  * Test the PGS class
  * @author A.Polverini
  */
 public class PGStest {
 
-	private String dbname = "egscc-specification";
+	private String dburl = "jdbc:postgresql://localhost:5432/egscc-specification";
 
 	private PGS pgs;
 
@@ -42,23 +41,27 @@ public class PGStest {
 
 	@Before
 	public void setUp() throws Exception {
-		pgs = new PGS(dbname);
+		try {
+			pgs = new PGS(dburl);
+		} catch (SQLException e) {
+			// no local server
+			Assume.assumeNoException(e);
+		}
 		assertNotNull("precondition constructor", pgs);
-		assertFalse("precondition not-connected", pgs.isConnected());
-		pgs.connect();
 		assertTrue("precondition connected", pgs.isConnected());
 	}
 
 	@After
 	public void tearDown() throws Exception {
+		if(pgs==null) return;
 		assertTrue("postcondition connected", pgs.isConnected());
-		pgs.disconnect();
+		pgs.dispose();
 		assertFalse("postcondition not-connected", pgs.isConnected());
 		pgs = null;
 	}
 
 	@Test
-	public void testQuery() throws SQLException, AlreadyConnectedException, NotConnectedException {
+	public void testQuery() throws SQLException {
 		
 		Map<String, Item> egsccSpecification = new HashMap<>();
 		
@@ -75,8 +78,12 @@ public class PGStest {
 		assertTrue(egsccSpecification.containsKey("projects"	 ));
 		
 		try {
-			XML.Writer writer = new XML.Writer("c:/tmp/pgs.xml");
-			writer.writeSpecification(egsccSpecification);
+			XML.Writer writer = new XML.Writer(new ByteArrayOutputStream());
+			Item specification = new Item();
+			for(Item result : results) {
+				specification.set(result.getTag().equals("information") ? "informations" : result.getTag(), result);
+			}
+			writer.writeTestSpecification(specification);
 			writer.close();
 		} catch (Exception e) {
 			e.printStackTrace();
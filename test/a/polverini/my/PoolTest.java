@@ -0,0 +1,135 @@
+/**
+ * Unit Test
+ */
+package a.polverini.my;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test the Pool.Bounded class
+ */
+public class PoolTest {
+
+	private static final String URL = "jdbc:h2:mem:pooltest;DB_CLOSE_DELAY=-1";
+
+	private Pool.Bounded pool;
+
+	@After
+	public void tearDown() throws Exception {
+		if(pool!=null) pool.close();
+	}
+
+	@Test
+	public void testReuse() throws SQLException {
+		pool = new Pool.Bounded(URL, "sa", "", 2);
+		Connection first = pool.borrow();
+		pool.release(first);
+		Connection second = pool.borrow();
+		assertSame("reused", first, second);
+		assertEquals("active", 1, pool.getMetrics().active);
+		pool.release(second);
+		Pool.Metrics metrics = pool.getMetrics();
+		assertEquals("active", 0, metrics.active);
+		assertEquals("idle", 1, metrics.idle);
+		assertEquals("borrowed", 2, metrics.borrowed);
+		assertEquals("created", 1, metrics.created);
+	}
+
+	@Test
+	public void testBound() throws SQLException {
+		pool = new Pool.Bounded(URL, "sa", "", 1, Pool.Bounded.DEFAULT_IDLE, 50, Pool.Bounded.DEFAULT_VALIDATION);
+		Connection connection = pool.borrow();
+		try {
+			pool.borrow();
+			fail("no free connection");
+		} catch (SQLException e) {
+			assertEquals("timeouts", 1, pool.getMetrics().timeouts);
+		}
+		pool.release(connection);
+		pool.release(pool.borrow());
+		assertEquals("created", 1, pool.getMetrics().created);
+	}
+
+	@Test
+	public void testRollbackOnRelease() throws SQLException {
+		pool = new Pool.Bounded(URL, "sa", "", 1);
+		Connection connection = pool.borrow();
+		connection.setAutoCommit(false);
+		pool.release(connection);
+		connection = pool.borrow();
+		assertTrue("auto-commit", connection.getAutoCommit());
+		pool.release(connection);
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		pool = new Pool.Bounded(URL, "sa", "", 2, 10, Pool.Bounded.DEFAULT_WAIT, Pool.Bounded.DEFAULT_VALIDATION, 0);
+		Connection connection = pool.borrow();
+		pool.release(connection);
+		Thread.sleep(50);
+		pool.evict();
+		Pool.Metrics metrics = pool.getMetrics();
+		assertEquals("idle", 0, metrics.idle);
+		assertEquals("evicted", 1, metrics.evicted);
+		assertTrue("closed", connection.isClosed());
+		pool.release(pool.borrow());
+		assertEquals("created", 2, pool.getMetrics().created);
+	}
+
+	@Test
+	public void testMinIdle() throws Exception {
+		pool = new Pool.Bounded("jdbc:h2:mem:poolminidle", "sa", "", 2, 10, Pool.Bounded.DEFAULT_WAIT, Pool.Bounded.DEFAULT_VALIDATION);
+		Connection first = pool.borrow();
+		first.createStatement().execute("CREATE TABLE KEPT (PK INTEGER)");
+		Connection second = pool.borrow();
+		pool.release(second);
+		pool.release(first);
+		Thread.sleep(50);
+		pool.evict();
+		Pool.Metrics metrics = pool.getMetrics();
+		assertEquals("idle", 1, metrics.idle);
+		assertEquals("evicted", 1, metrics.evicted);
+		assertTrue("oldest closed", second.isClosed());
+		Connection connection = pool.borrow();
+		assertSame("last one kept", first, connection);
+		connection.createStatement().execute("SELECT count(*) FROM KEPT");
+		pool.release(connection);
+	}
+
+	@Test
+	public void testClosedConnection() throws SQLException {
+		pool = new Pool.Bounded(URL, "sa", "", 1);
+		Connection connection = pool.borrow();
+		connection.close();
+		pool.release(connection);
+		Pool.Metrics metrics = pool.getMetrics();
+		assertEquals("idle", 0, metrics.idle);
+		assertEquals("active", 0, metrics.active);
+	}
+
+	@Test
+	public void testClose() throws SQLException {
+		pool = new Pool.Bounded(URL, "sa", "", 1);
+		Connection connection = pool.borrow();
+		pool.close();
+		assertFalse("open", pool.isOpen());
+		pool.release(connection);
+		assertTrue("closed", connection.isClosed());
+		try {
+			pool.borrow();
+			fail("pool closed");
+		} catch (SQLException e) {
+		}
+	}
+
+}
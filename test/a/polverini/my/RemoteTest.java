@@ -10,13 +10,11 @@ import java.sql.SQLException;
 
 import org.junit.After;
 import org.junit.AfterClass;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
-import a.polverini.my.exceptions.AlreadyConnectedException;
-import a.polverini.my.exceptions.NotConnectedException;
-
 /**
  * @author A.Polverini
  */
@@ -42,7 +40,7 @@ public class RemoteTest {
 	}
 
 	@Test
-	public void testConnection() throws SQLException, AlreadyConnectedException, NotConnectedException, ClassNotFoundException {
+	public void testConnection() throws SQLException {
 		int    port = 5432;
 		String host = "195.81.84.89";
 		String user = "apolverini";
@@ -53,17 +51,20 @@ public class RemoteTest {
 		System.out.println("port="+port);
 		System.out.println("name="+name);
 		
-		DB remoteDB = new PGS(name, user, pswd, host, port);
-		assertFalse("precondition not-connected", remoteDB.isConnected());
-
 		System.out.println("connecting...");
-		remoteDB.connect();
+		DB remoteDB = null;
+		try {
+			remoteDB = new PGS(String.format("jdbc:postgresql://%s:%d/%s", host, port, name), user, pswd);
+		} catch (SQLException e) {
+			// server not reachable
+			Assume.assumeNoException(e);
+		}
 		assertTrue("connected", remoteDB.isConnected());
 
 		System.out.println("OK!");
 
 		System.out.println("disconnecting...");
-		remoteDB.disconnect();
+		remoteDB.dispose();
 		assertFalse("not-connected", remoteDB.isConnected());
 	}
 	
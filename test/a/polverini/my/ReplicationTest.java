@@ -0,0 +1,146 @@
+/**
+ * Unit Test
+ */
+package a.polverini.my;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test the Replication class
+ */
+public class ReplicationTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private DB source;
+	private DB target;
+
+	private static Map<Object, String> keys() {
+		Map<Object, String> keys = new LinkedHashMap<>();
+		keys.put("PK", "PK");
+		keys.put("NAME", "NAME");
+		return keys;
+	}
+
+	private static void execute(DB db, String... sql) throws SQLException {
+		Connection connection = db.getConnection();
+		try {
+			Statement statement = connection.createStatement();
+			for(String s : sql) {
+				statement.execute(s);
+			}
+			statement.close();
+		} finally {
+			db.release(connection);
+		}
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		source = new DB("jdbc:h2:mem:replication-source;DB_CLOSE_DELAY=-1", "sa", "") {
+		};
+		target = new DB("jdbc:h2:mem:replication-target;DB_CLOSE_DELAY=-1", "sa", "") {
+		};
+		for(DB db : new DB[] {source, target}) {
+			execute(db, "DROP TABLE IF EXISTS TEST", "CREATE TABLE TEST (PK BIGINT PRIMARY KEY, NAME VARCHAR(32))");
+		}
+		for(int i=1; i<=100; i++) {
+			execute(source, "INSERT INTO TEST (PK, NAME) VALUES ("+i+", 'n"+i+"')");
+		}
+		target.setBatchSize(7);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		source.dispose();
+		target.dispose();
+	}
+
+	private Replication replication(File checkpoint) {
+		Replication replication = new Replication(source, target);
+		replication.add("TEST", keys(), "TEST", keys());
+		replication.setCheckpoint(checkpoint);
+		return replication;
+	}
+
+	@Test
+	public void testCopy() throws Exception {
+		File checkpoint = new File(folder.getRoot(), "copy.properties");
+		assertEquals(Long.valueOf(100), replication(checkpoint).run().get("TEST"));
+		assertEquals(100, target.count("TEST"));
+		assertEquals(source.checksum("TEST", keys()), target.checksum("TEST", keys()));
+		assertFalse("checkpoint deleted", checkpoint.exists());
+	}
+
+	@Test
+	public void testResumeAfterCheckpoint() throws Exception {
+		// the batches up to 50 were written, the checkpoint was saved at 30
+		for(int i=1; i<=50; i++) {
+			execute(target, "INSERT INTO TEST (PK, NAME) VALUES ("+i+", 'n"+i+"')");
+		}
+		File checkpoint = new File(folder.getRoot(), "resume.properties");
+		Properties state = new Properties();
+		state.setProperty("TEST.rows", "30");
+		state.setProperty("TEST.bound", "L:100");
+		OutputStream stream = new FileOutputStream(checkpoint);
+		try {
+			state.store(stream, null);
+		} finally {
+			stream.close();
+		}
+		// added after the copy started, not copied
+		execute(source, "INSERT INTO TEST (PK, NAME) VALUES (101, 'n101')");
+
+		assertEquals(Long.valueOf(100), replication(checkpoint).run().get("TEST"));
+		assertEquals(100, target.count("TEST"));
+		assertFalse("checkpoint deleted", checkpoint.exists());
+	}
+
+	@Test
+	public void testDiff() throws Exception {
+		Replication replication = replication(null);
+		replication.run();
+		replication.setLeafSize(10);
+		assertTrue(replication.diff().isEmpty());
+		execute(target, "UPDATE TEST SET NAME = 'changed' WHERE PK = 5", "DELETE FROM TEST WHERE PK = 15", "DELETE FROM TEST WHERE PK = 55");
+		List<Replication.Difference> differences = replication.diff();
+		assertEquals(2, differences.size());
+		Replication.Difference merged = differences.get(0);
+		assertEquals("adjacent ranges merged", Long.valueOf(1), merged.from);
+		assertEquals(Long.valueOf(21), merged.to);
+		assertEquals(20, merged.sourceRows);
+		assertEquals(19, merged.targetRows);
+		assertEquals(Long.valueOf(51), differences.get(1).from);
+		assertEquals(Long.valueOf(61), differences.get(1).to);
+	}
+
+	@Test
+	public void testVerifyWithoutCheckpoint() throws Exception {
+		Replication replication = replication(null);
+		replication.run();
+		assertTrue(replication.verify().isEmpty());
+		execute(target, "UPDATE TEST SET NAME = 'changed' WHERE PK = 10");
+		assertEquals("TEST", replication.verify().get(0));
+	}
+
+}
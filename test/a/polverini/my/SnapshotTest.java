@@ -0,0 +1,182 @@
+/**
+ * Unit Test
+ */
+package a.polverini.my;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test the Snapshot class
+ */
+public class SnapshotTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Snapshot snapshot;
+	private Map<String, String> fingerprint;
+
+	@Before
+	public void setUp() throws Exception {
+		snapshot = new Snapshot(new File(folder.getRoot(), "test.snap"));
+		fingerprint = new HashMap<>();
+		fingerprint.put("PROJECT", "2/2");
+		fingerprint.put("TEST_AREA", "1/10");
+	}
+
+	/**
+	 * @return a tree with two sections, typed items and a reference across the sections
+	 */
+	private static Item tree() {
+		Item root = new Item();
+		Item projects = new Item(root, "projects");
+		new Item(root, "scenarios");
+		DBS.Project project = new DBS.Project(projects);
+		project.set(DBS.Project.Field.PK, 1L);
+		project.set(DBS.Project.Field.ID, "p&<1>");
+		DBS.TestArea testarea = new DBS.TestArea(project);
+		testarea.set(DBS.TestArea.Field.PK, 10);
+		testarea.set(DBS.TestArea.Field.TITLE, "àèì");
+		Item other = new Item(projects, "other");
+		other.set("flag", true);
+		other.set("ratio", 0.5);
+		other.set("date", Timestamp.valueOf("2020-01-02 03:04:05.123456789"));
+		other.set("type", DBS.Table.TESTAREA);
+		other.set("testarea", testarea);
+		return root;
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		snapshot.write(fingerprint, tree());
+
+		Item root = new Item();
+		Item projects = new Item(root, "projects");
+		Map<String, String> stored = snapshot.read(fingerprint, root);
+		assertEquals(fingerprint, stored);
+
+		assertEquals("sections", 2, root.getChildren().size());
+		assertSame("existing section filled", projects, root.getChildren().get(0));
+		assertEquals("scenarios", root.getChildren().get(1).getTag());
+
+		Item project = projects.getChildren().get(0);
+		assertTrue(project instanceof DBS.Project);
+		assertSame(projects, project.getParent());
+		assertEquals(1L, project.get(DBS.Project.Field.PK));
+		assertEquals("p&<1>", project.get(DBS.Project.Field.ID));
+
+		Item testarea = project.getChildren().get(0);
+		assertTrue(testarea instanceof DBS.TestArea);
+		assertEquals(10, testarea.get(DBS.TestArea.Field.PK));
+		assertEquals("àèì", testarea.get(DBS.TestArea.Field.TITLE));
+
+		Item other = projects.getChildren().get(1);
+		assertEquals("other", other.getTag());
+		assertEquals(true, other.get("flag"));
+		assertEquals(0.5, other.get("ratio"));
+		assertEquals(Timestamp.valueOf("2020-01-02 03:04:05.123456789"), other.get("date"));
+		assertSame(DBS.Table.TESTAREA, other.get("type"));
+		assertSame("reference", testarea, other.get("testarea"));
+	}
+
+	@Test
+	public void testMissing() throws IOException {
+		assertNull(snapshot.read(fingerprint, new Item()));
+	}
+
+	@Test
+	public void testStale() throws IOException {
+		snapshot.write(fingerprint, tree());
+		Map<String, String> changed = new HashMap<>(fingerprint);
+		changed.put("TEST_AREA", "2/11");
+		Item root = new Item();
+		assertNull(snapshot.read(changed, root));
+		assertTrue(root.getChildren().isEmpty());
+	}
+
+	@Test
+	public void testCorrupted() throws IOException {
+		snapshot.write(fingerprint, tree());
+		RandomAccessFile file = new RandomAccessFile(snapshot.getFile(), "rw");
+		try {
+			file.setLength(file.length()-6);
+		} finally {
+			file.close();
+		}
+		Item root = new Item();
+		Item projects = new Item(root, "projects");
+		try {
+			snapshot.read(fingerprint, root);
+			fail("corrupted");
+		} catch (IOException e) {
+			assertNotNull(e.getMessage());
+		}
+		assertEquals("no new section", 1, root.getChildren().size());
+		assertTrue("no partial items", projects.getChildren().isEmpty());
+		assertTrue("file released", snapshot.getFile().delete());
+	}
+
+	@Test
+	public void testValues() throws IOException {
+		Item root = new Item();
+		Item section = new Item(root, "values");
+		Item item = new Item(section, "item");
+		item.set("short", (short)1);
+		item.set("byte", (byte)2);
+		item.set("float", 0.25f);
+		item.set("decimal", new BigDecimal("12345678901234567890.123"));
+		item.set("date", java.sql.Date.valueOf("2020-01-02"));
+		item.set("time", java.sql.Time.valueOf("03:04:05"));
+		item.set("bytes", new byte[] { 1, 2, 3 });
+		snapshot.write(fingerprint, root);
+
+		Item restored = new Item();
+		assertEquals(fingerprint, snapshot.read(fingerprint, restored));
+		Item copy = restored.getChildren().get(0).getChildren().get(0);
+		assertEquals((short)1, copy.get("short"));
+		assertEquals((byte)2, copy.get("byte"));
+		assertEquals(0.25f, copy.get("float"));
+		assertEquals(new BigDecimal("12345678901234567890.123"), copy.get("decimal"));
+		assertEquals(java.sql.Date.valueOf("2020-01-02"), copy.get("date"));
+		assertEquals(java.sql.Time.valueOf("03:04:05"), copy.get("time"));
+		assertArrayEquals(new byte[] { 1, 2, 3 }, (byte[])copy.get("bytes"));
+	}
+
+	@Test
+	public void testNotAnItem() throws IOException {
+		snapshot.write(fingerprint, tree());
+		byte[] bytes = Files.readAllBytes(snapshot.getFile().toPath());
+		String content = new String(bytes, StandardCharsets.ISO_8859_1);
+		// a class name of the same length, not an item
+		content = content.replace(Item.class.getName(), "java.util.ArrayList");
+		Files.write(snapshot.getFile().toPath(), content.getBytes(StandardCharsets.ISO_8859_1));
+		try {
+			snapshot.read(fingerprint, new Item());
+			fail("not an item");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("java.util.ArrayList"));
+		}
+	}
+
+}
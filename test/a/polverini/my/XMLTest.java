@@ -0,0 +1,217 @@
+/**
+ * Unit Test
+ */
+package a.polverini.my;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import a.polverini.my.XML.Writer.EscapeUtil;
+
+/**
+ * Test the XML class
+ */
+public class XMLTest {
+
+	/**
+	 * @return a specification with enough projects to fill the parts in flight several times
+	 */
+	private static Item specification() {
+		Item projects = new Item(null, "projects");
+		for(int i=0; i<20; i++) {
+			DBS.Project project = new DBS.Project(projects);
+			project.set(DBS.Project.Field.PK, (long)i);
+			project.set(DBS.Project.Field.ID, "project "+i);
+		}
+		Item specification = new Item();
+		specification.set("projects", projects);
+		return specification;
+	}
+
+	private static String write(ExecutorService executor, int maxInFlight) throws IOException {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		XML.Writer writer = new XML.Writer(stream);
+		writer.setExecutor(executor, maxInFlight);
+		writer.writeTestSpecification(specification());
+		writer.close();
+		return new String(stream.toByteArray());
+	}
+
+	@Test
+	public void testConcurrentWrite() throws IOException {
+		String sequential = write(null, 0);
+		assertTrue(sequential.contains("id='project 19'"));
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			assertEquals("same order", sequential, write(executor, 3));
+			assertEquals("one in flight", sequential, write(executor, 1));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testWriteFromExecutor() throws Exception {
+		String sequential = write(null, 0);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			assertEquals("rendered inline", sequential, executor.submit(() -> write(executor, 3)).get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoneInFlight() throws IOException {
+		new XML.Writer(new ByteArrayOutputStream()).setExecutor(Executors.newSingleThreadExecutor(), 0);
+	}
+
+	/**
+	 * @param dbs the specification database
+	 * @return the database exported as XML
+	 */
+	private static byte[] export(DBS dbs) throws Exception {
+		Item specification = new Item();
+		for(Item result : dbs.query()) {
+			specification.set(result.getTag().equals("information") ? "informations" : result.getTag(), result);
+		}
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		XML.Writer writer = new XML.Writer(stream);
+		writer.writeTestSpecification(specification);
+		writer.close();
+		return stream.toByteArray();
+	}
+
+	@Test
+	public void testReadRoundTrip() throws Exception {
+		String source = "jdbc:h2:mem:xmltest-source;DB_CLOSE_DELAY=-1";
+		String target = "jdbc:h2:mem:xmltest-target;DB_CLOSE_DELAY=-1";
+		H2STest.create(source);
+		H2STest.create(target);
+		H2S h2s = new H2S(source);
+		Connection connection = h2s.getConnection();
+		try {
+			Statement statement = connection.createStatement();
+			statement.execute("INSERT INTO REQUIREMENT (ID, NAME, DESCRIPTION) VALUES ('R1', 'r', 'line <one> & \"two\"\n  it''s àèì')");
+			statement.execute("INSERT INTO DEPLOYMENT (PK, NAME) VALUES (7, 'd1')");
+			for(int p=1; p<=2; p++) {
+				statement.execute("INSERT INTO PROJECT (PK, ID) VALUES ("+p+", 'p"+p+"')");
+				statement.execute("INSERT INTO PROJECT_REQUIREMENT (PK, REQUIREMENT_ID, PROJECT_PK) VALUES ("+p+", 'R1', "+p+")");
+				statement.execute("INSERT INTO PROJECT_REQUIREMENT_DEPLOYMENT (PROJECT_REQUIREMENT_PK, DEPLOYMENTS_PK) VALUES ("+p+", 7)");
+				statement.execute("INSERT INTO TEST_AREA (PK, ID, TITLE, PROJECT_PK) VALUES ("+p+", 'ta"+p+"', 'T&A àèì', "+p+")");
+				statement.execute("INSERT INTO FEATURE (PK, ID, TESTAREA_PK) VALUES ("+p+", 'f"+p+"', "+p+")");
+				statement.execute("INSERT INTO TEST_CASE (PK, ID, FEATURE_PK) VALUES ("+p+", 'tc"+p+"', "+p+")");
+				// the scenario of the first project tests an area of the second one
+				statement.execute("INSERT INTO SCENARIO (PK, ID, PROJECT_PK, TESTAREA_PK) VALUES ("+p+", 'sc"+p+"', "+p+", "+(3-p)+")");
+				statement.execute("INSERT INTO PROCEDURE (PK, ID, SCENARIO_PK) VALUES ("+p+", 'pr"+p+"', "+p+")");
+				statement.execute("INSERT INTO PROCEDURE_TEST_CASE (PROCEDURE_PK, TESTCASES_PK) VALUES ("+p+", "+(3-p)+")");
+			}
+			statement.close();
+		} finally {
+			h2s.release(connection);
+		}
+		byte[] exported = export(h2s);
+		h2s.dispose();
+		assertTrue(new String(exported, StandardCharsets.UTF_8).startsWith("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"));
+
+		H2S imported = new H2S(target);
+		try {
+			imported.createSequences();
+			assertEquals("rows", 18, new XML.Reader(imported).read(new ByteArrayInputStream(exported)));
+			assertEquals(new String(exported, StandardCharsets.UTF_8), new String(export(imported), StandardCharsets.UTF_8));
+		} finally {
+			imported.dispose();
+		}
+	}
+
+	@Test
+	public void testCompressionOf() {
+		assertSame(XML.Compression.NONE, XML.Compression.of("spec.xml"));
+		assertSame(XML.Compression.GZIP, XML.Compression.of("spec.xml.gz"));
+		assertSame(XML.Compression.GZIP, XML.Compression.of("SPEC.XML.GZ"));
+		assertSame(XML.Compression.DEFLATE, XML.Compression.of("spec.xml.zz"));
+		assertSame(XML.Compression.NONE, XML.Compression.of("spec.gz.xml"));
+	}
+
+	@Test
+	public void testCompressionRoundTrip() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for(int i=0; i<1000; i++) {
+			sb.append("<Project pk='p").append(i).append("' id='àèì'/>\n");
+		}
+		byte[] data = sb.toString().getBytes(StandardCharsets.UTF_8);
+		for(XML.Compression compression : XML.Compression.values()) {
+			ByteArrayOutputStream stream = new ByteArrayOutputStream();
+			OutputStream out = compression.output(stream, 512);
+			out.write(data);
+			out.close();
+			if(compression==XML.Compression.NONE) {
+				assertArrayEquals(compression.name(), data, stream.toByteArray());
+			} else {
+				assertTrue(compression.name(), stream.size()<data.length);
+			}
+			InputStream in = compression.input(new ByteArrayInputStream(stream.toByteArray()), 512);
+			ByteArrayOutputStream read = new ByteArrayOutputStream();
+			byte[] buffer = new byte[1000];
+			for(int n=in.read(buffer); n>=0; n=in.read(buffer)) {
+				read.write(buffer, 0, n);
+			}
+			in.close();
+			assertArrayEquals(compression.name(), data, read.toByteArray());
+		}
+	}
+
+	@Test
+	public void testEscape() {
+		assertEquals("&amp;&lt;&gt;&quot;&apos;", EscapeUtil.escape("&<>\"'"));
+		assertEquals("a &amp; b", EscapeUtil.escape("a & b"));
+		assertEquals("&lt;tag attr=&quot;1&quot;&gt;", EscapeUtil.escape("<tag attr=\"1\">"));
+		assertEquals("", EscapeUtil.escape(""));
+		assertEquals("àèì", EscapeUtil.escape("àèì"));
+	}
+
+	@Test
+	public void testEscapeUnchanged() {
+		String s = "nothing to escape";
+		assertSame("no copy", s, EscapeUtil.escape(s));
+	}
+
+	@Test
+	public void testEscapeAppendable() throws IOException {
+		StringBuilder sb = new StringBuilder("x=");
+		EscapeUtil.escape(sb, "it's <1>");
+		assertEquals("x=it&apos;s &lt;1&gt;", sb.toString());
+	}
+
+	@Test
+	public void testUnescape() {
+		assertEquals("&<>\"'", EscapeUtil.unescape("&amp;&lt;&gt;&quot;&apos;"));
+		assertEquals("&amp;", EscapeUtil.unescape("&amp;amp;"));
+		assertEquals("a & b &unknown;", EscapeUtil.unescape("a &amp; b &unknown;"));
+		assertEquals("trailing &", EscapeUtil.unescape("trailing &"));
+		String s = "nothing to unescape";
+		assertSame("no copy", s, EscapeUtil.unescape(s));
+	}
+
+	@Test
+	public void testRoundTrip() {
+		String s = "p&<1> \"q\" 'r' &amp; àèì";
+		assertEquals(s, EscapeUtil.unescape(EscapeUtil.escape(s)));
+	}
+
+}